@@ -15,6 +15,7 @@
  */
 package org.iplass.mtp.dev.gradle;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
@@ -22,10 +23,14 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.gradle.api.DefaultTask;
 import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.TaskAction;
+import org.iplass.mtp.dev.gradle.history.TaskHistory;
 
 /**
  * task abstract class.
@@ -34,9 +39,19 @@ import org.gradle.api.tasks.TaskAction;
  * If this class is inherited, {@link #doTask()} must be implemented.
  * </p>
  *
+ * <p>
+ * Each execution is recorded in the task history (see {@link TaskHistory}) with the duration, the phases measured by {@link #measurePhase(String, Runnable)}
+ * and the values recorded by {@link #recordHistory(String, Object)}.
+ * </p>
+ *
  * @author SEKIGUCHI Naoya
  */
 public abstract class AbstractTask extends DefaultTask {
+	/** phase name and duration (ms) of the execution */
+	private final Map<String, Long> phases = new LinkedHashMap<>();
+	/** values recorded in the task history */
+	private final Map<String, String> historyValues = new LinkedHashMap<>();
+
 	/**
 	 * constructor
 	 */
@@ -49,10 +64,20 @@ public abstract class AbstractTask extends DefaultTask {
 	 */
 	@TaskAction
 	public void taskAction() {
-		removeTemporaryDir();
-		getTemporaryDir().mkdirs();
+		long start = System.currentTimeMillis();
+		String outcome = TaskHistory.FAILED;
+		try {
+			measurePhase("prepare", () -> {
+				removeTemporaryDir();
+				getTemporaryDir().mkdirs();
+			});
+
+			doTask();
+			outcome = TaskHistory.SUCCESS;
 
-		doTask();
+		} finally {
+			appendHistory(outcome, System.currentTimeMillis() - start);
+		}
 	}
 
 	/**
@@ -60,6 +85,62 @@ public abstract class AbstractTask extends DefaultTask {
 	 */
 	public abstract void doTask();
 
+	/**
+	 * Execute the action and measure the duration as a phase of the task history.
+	 *
+	 * <p>
+	 * If the phase is executed multiple times, the durations are accumulated.
+	 * </p>
+	 *
+	 * @param name phase name.
+	 * @param action action of the phase.
+	 */
+	protected void measurePhase(String name, Runnable action) {
+		long start = System.currentTimeMillis();
+		try {
+			action.run();
+		} finally {
+			long duration = System.currentTimeMillis() - start;
+			synchronized (phases) {
+				phases.merge(name, duration, Long::sum);
+			}
+		}
+	}
+
+	/**
+	 * Record a value in the task history of this execution.
+	 * @param key key. e.g. {@link TaskHistory#SOURCE_COUNT}
+	 * @param value value.
+	 */
+	protected void recordHistory(String key, Object value) {
+		synchronized (historyValues) {
+			historyValues.put(key, String.valueOf(value));
+		}
+	}
+
+	/**
+	 * Whether this task is recorded in the task history.
+	 *
+	 * <p>
+	 * Default value is the taskHistory of the extension, or false if not set.
+	 * </p>
+	 *
+	 * @return if true, the execution is recorded.
+	 */
+	@Internal
+	protected boolean isHistoryEnabled() {
+		return getPluginExtension().getTaskHistory().getOrElse(Boolean.FALSE);
+	}
+
+	/**
+	 * Get the task history of the root project.
+	 * @return task history.
+	 */
+	@Internal
+	protected TaskHistory getTaskHistory() {
+		return new TaskHistory(TaskHistory.getFile(getProject().getGradle().getGradleUserHomeDir(), getProject().getRootDir()));
+	}
+
 	/**
 	 * Get {@link RootPluginExtension} instance.
 	 * @return {@link RootPluginExtension} instance.
@@ -80,6 +161,62 @@ public abstract class AbstractTask extends DefaultTask {
 		return getProject().getExtensions().getByType(RootPluginExtension.class).getExtensions().getByType(type);
 	}
 
+	/**
+	 * Get the checkpoint file of this task.
+	 *
+	 * <p>
+	 * The file is placed outside the temporary directory so that it is retained between task executions.
+	 * </p>
+	 *
+	 * @return checkpoint file. (build/iplass/checkpoint/${taskName}.properties)
+	 */
+	@Internal
+	protected File getCheckpointFile() {
+		return new File(getBuildDirectory("iplass/checkpoint"), getName() + ".properties");
+	}
+
+	/**
+	 * Get the directory under the build directory.
+	 * @param path relative path from the build directory.
+	 * @return directory. (the directory may not exist)
+	 */
+	protected File getBuildDirectory(String path) {
+		return getProject().getLayout().getBuildDirectory().dir(path).get().getAsFile();
+	}
+
+	/**
+	 * Append the execution to the task history.
+	 * @param outcome outcome.
+	 * @param duration duration (ms).
+	 */
+	private void appendHistory(String outcome, long duration) {
+		if (!isHistoryEnabled()) {
+			return;
+		}
+
+		Map<String, String> record = new LinkedHashMap<>();
+		record.put(TaskHistory.TIME, String.valueOf(System.currentTimeMillis()));
+		record.put(TaskHistory.TASK, getPath());
+		record.put(TaskHistory.TENANT, String.valueOf(getPluginExtension().getTenantId().getOrNull()));
+		record.put(TaskHistory.OUTCOME, outcome);
+		record.put(TaskHistory.DURATION, String.valueOf(duration));
+		synchronized (phases) {
+			record.put(TaskHistory.PHASES, phases.entrySet().stream().map(e -> e.getKey() + "=" + e.getValue()).collect(Collectors.joining(",")));
+			phases.clear();
+		}
+		synchronized (historyValues) {
+			record.putAll(historyValues);
+			historyValues.clear();
+		}
+
+		try {
+			getTaskHistory().append(record);
+		} catch (RuntimeException e) {
+			// the history is not required to execute the task.
+			getLogger().warn("Unable to record the task history. {}", e.getMessage());
+		}
+	}
+
 	/**
 	 * Delete temporary directories.
 	 */
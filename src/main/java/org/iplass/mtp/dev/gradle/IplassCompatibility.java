@@ -0,0 +1,91 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * iPLAss and java compatibility.
+ *
+ * <p>
+ * Same as the compatibility matrix in README.
+ * </p>
+ *
+ * <ul>
+ * <li>iPLAss 3.x - java 1.8, 11, 17</li>
+ * <li>iPLAss 4.x - java 21</li>
+ * </ul>
+ */
+public class IplassCompatibility {
+	/** iplass-core jar file name pattern */
+	private static final Pattern IPLASS_CORE_JAR = Pattern.compile("^iplass-core-((\\d+)\\.\\d+\\.\\d+.*)\\.jar$");
+	/** iPLAss major version and supported java versions */
+	private static final Map<Integer, List<Integer>> SUPPORTED_JAVA_VERSIONS;
+
+	static {
+		Map<Integer, List<Integer>> versions = new HashMap<>();
+		versions.put(3, Arrays.asList(8, 11, 17));
+		versions.put(4, Arrays.asList(21));
+		SUPPORTED_JAVA_VERSIONS = Collections.unmodifiableMap(versions);
+	}
+
+	/**
+	 * private constructor.
+	 */
+	private IplassCompatibility() {
+	}
+
+	/**
+	 * Find the iPLAss version from the classpath.
+	 * @param classpath classpath entries.
+	 * @return iPLAss version. null if iplass-core jar is not found.
+	 */
+	public static String findIplassVersion(Iterable<File> classpath) {
+		for (File file : classpath) {
+			Matcher matcher = IPLASS_CORE_JAR.matcher(file.getName());
+			if (matcher.matches()) {
+				return matcher.group(1);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Validate the java version for the iPLAss version.
+	 *
+	 * <p>
+	 * If the iPLAss version is not in the compatibility matrix, it is not validated.
+	 * </p>
+	 *
+	 * @param iplassVersion iPLAss version.
+	 * @param javaVersion java language version.
+	 * @throws IllegalStateException if the java version is not supported.
+	 */
+	public static void validate(String iplassVersion, int javaVersion) {
+		int major = Integer.parseInt(iplassVersion.substring(0, iplassVersion.indexOf('.')));
+		List<Integer> supported = SUPPORTED_JAVA_VERSIONS.get(major);
+		if (null != supported && !supported.contains(javaVersion)) {
+			throw new IllegalStateException("iPLAss " + iplassVersion + " does not support java " + javaVersion + ". supported java versions: " + supported);
+		}
+	}
+}
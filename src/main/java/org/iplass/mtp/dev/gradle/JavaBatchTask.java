@@ -15,6 +15,23 @@
  */
 package org.iplass.mtp.dev.gradle;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+
+import org.gradle.api.Action;
+import org.gradle.api.GradleException;
+import org.gradle.api.JavaVersion;
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.plugins.JavaPlugin;
 import org.gradle.api.plugins.JavaPluginExtension;
@@ -22,10 +39,24 @@ import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Nested;
 import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.SourceSet;
+import org.gradle.jvm.toolchain.JavaLauncher;
+import org.gradle.process.ExecOperations;
 import org.gradle.process.ExecResult;
 import org.gradle.process.JavaExecSpec;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutionException;
+import org.gradle.workers.WorkerExecutor;
+import org.iplass.mtp.dev.gradle.history.TaskHistory;
+import org.iplass.mtp.dev.gradle.launcher.BatchLauncher;
+import org.iplass.mtp.dev.gradle.launcher.BatchWatchdog;
+import org.iplass.mtp.dev.gradle.launcher.InProcessAction;
+import org.iplass.mtp.dev.gradle.launcher.MetaDataPathList;
+import org.iplass.mtp.dev.gradle.launcher.RecordingJavaExecSpec;
+import org.iplass.mtp.dev.gradle.launcher.SpeculativeLaunch;
+import org.iplass.mtp.dev.gradle.launcher.SpeculativeLaunchService;
 
 /**
  * Superclass of the javaexec task for executing batches.
@@ -33,6 +64,9 @@ import org.gradle.process.JavaExecSpec;
  * @author SEKIGUCHI Naoya
  */
 public abstract class JavaBatchTask extends AbstractTask {
+	/** number of batch executions. used for the watchdog control directory and the in-process output files */
+	private final AtomicInteger executionCount = new AtomicInteger();
+
 	/**
 	 * get service-config xml path.
 	 *
@@ -53,6 +87,92 @@ public abstract class JavaBatchTask extends AbstractTask {
 	@Optional
 	abstract protected ListProperty<String> getJvmArgs();
 
+	/**
+	 * get java launcher of the batch.
+	 *
+	 * <p>
+	 * If set as a task property, the task property takes precedence over the extension value.
+	 * If neither is set, the java used by Gradle is used.
+	 * </p>
+	 *
+	 * @return java launcher of the batch.
+	 */
+	@Nested
+	@Optional
+	abstract protected Property<JavaLauncher> getJavaLauncher();
+
+	/**
+	 * get wall-clock timeout of the batch.
+	 *
+	 * <p>
+	 * If the batch does not complete within the timeout, thread dumps are taken and the batch JVM is terminated.
+	 * </p>
+	 *
+	 * @return wall-clock timeout of the batch.
+	 */
+	@Input
+	@Optional
+	abstract protected Property<Duration> getBatchTimeout();
+
+	/**
+	 * get inactivity timeout of the batch.
+	 *
+	 * <p>
+	 * If the batch makes no output and no CPU progress within the timeout, thread dumps are taken and the batch JVM is terminated.
+	 * </p>
+	 *
+	 * @return inactivity timeout of the batch.
+	 */
+	@Input
+	@Optional
+	abstract protected Property<Duration> getInactivityTimeout();
+
+	/**
+	 * @return number of thread dumps taken on timeout. Default value is 3.
+	 */
+	@Input
+	@Optional
+	abstract protected Property<Integer> getThreadDumpCount();
+
+	/**
+	 * @return interval of thread dumps taken on timeout. Default value is 5 seconds.
+	 */
+	@Input
+	@Optional
+	abstract protected Property<Duration> getThreadDumpInterval();
+
+	/**
+	 * get speculative launch usage.
+	 *
+	 * <p>
+	 * If true, the batch JVM is launched with the dependencies when the task graph is ready, and the execution is handed over to the JVM.
+	 * If set as a task property, the task property takes precedence over the extension value.
+	 * </p>
+	 *
+	 * @return if true, launch the batch JVM speculatively.
+	 */
+	@Input
+	@Optional
+	abstract protected Property<Boolean> getSpeculativeLaunch();
+
+	/**
+	 * @return build service of the speculative launch.
+	 */
+	@Internal
+	abstract protected Property<SpeculativeLaunchService> getSpeculativeLaunchService();
+
+	/**
+	 * @return process execution service.
+	 */
+	@Inject
+	abstract protected ExecOperations getExecOperations();
+
+	/**
+	 * @return worker executor of the in-process execution.
+	 */
+	@Inject
+	abstract protected WorkerExecutor getWorkerExecutor();
+
 	/**
 	 * default constructor.
 	 */
@@ -60,29 +180,291 @@ public abstract class JavaBatchTask extends AbstractTask {
 		super();
 
 		// depends classes task. because use classpath resource service-config.
-		dependsOn(getProject().getTasks().getByPath(JavaPlugin.CLASSES_TASK_NAME));
+		// the classes task is referenced lazily so that it is not realized when this task is realized.
+		getProject().getPluginManager().withPlugin("java",
+				p -> dependsOn(getProject().getTasks().named(JavaPlugin.CLASSES_TASK_NAME)));
 	}
 
 	@Override
 	public void doTask() {
 		try {
-			beforeTask();
-			ExecResult result = getProject().javaexec(this::configureInner);
-			result.assertNormalExitValue().rethrowFailure();
+			measurePhase("beforeTask", this::beforeTask);
+			javaexec(this::configure);
 
 		} finally {
-			afterTask();
+			measurePhase("afterTask", this::afterTask);
 		}
 	}
 
+	/**
+	 * Execute the batch with javaexec.
+	 *
+	 * <p>
+	 * The common settings (language, service-config, jvm args and classpath) are applied before the specified configuration.
+	 * If the batch exits abnormally, an exception is thrown.
+	 * </p>
+	 *
+	 * @param configure individual configuration of the execution.
+	 */
+	protected void javaexec(Action<? super JavaExecSpec> configure) {
+		recordHistory(TaskHistory.JVM, "java " + getJavaLanguageVersion() + " " + String.join(" ", getJvmArgs().getOrElse(Collections.emptyList())));
+		measurePhase("javaexec", () -> executeBatch(configure));
+	}
+
+	/**
+	 * List the metadata paths of the tenant in the database.
+	 *
+	 * <p>
+	 * A batch JVM is executed with the common settings, and the paths are listed with the metadata context of iPLAss.
+	 * </p>
+	 *
+	 * @param prefix path prefix. e.g. "/entity/"
+	 * @return sorted metadata paths.
+	 */
+	protected List<String> listMetaDataPaths(String prefix) {
+		File launcherDirectory = getBuildDirectory("iplass/launcher");
+		BatchLauncher.extract(launcherDirectory);
+
+		// /temp/dir/taskname_paths.txt
+		File outputFile = new File(getTemporaryDir(), getName() + "_paths.txt");
+		javaexec(spec -> {
+			spec.getMainClass().set(MetaDataPathList.class.getName());
+			spec.args(String.valueOf(getPluginExtension().getTenantId().get()), prefix, outputFile.getAbsolutePath());
+			spec.classpath(launcherDirectory);
+		});
+
+		try {
+			return Files.readAllLines(outputFile.toPath(), StandardCharsets.UTF_8).stream().filter(l -> !l.isEmpty()).collect(Collectors.toList());
+		} catch (IOException e) {
+			throw new GradleException("Unable to read file '" + outputFile.getAbsolutePath() + "'.", e);
+		}
+	}
+
+	/**
+	 * Execute the batch with the speculative launch, the watchdog or javaexec. internal use.
+	 * @param configure individual configuration of the execution.
+	 */
+	private void executeBatch(Action<? super JavaExecSpec> configure) {
+		if (useInProcess() && executeInProcess(configure)) {
+			return;
+		}
+
+		// the speculative launch is used only by the first execution.
+		SpeculativeLaunch launch = getSpeculativeLaunchService().isPresent() ? getSpeculativeLaunchService().get().take(getPath()) : null;
+		if (null != launch) {
+			boolean launched = false;
+			try {
+				launched = handover(launch, configure);
+			} finally {
+				if (!launched) {
+					launch.discard();
+				}
+			}
+			if (launched) {
+				return;
+			}
+		}
+
+		if (!getBatchTimeout().isPresent() && !getInactivityTimeout().isPresent()) {
+			execute(configure);
+			return;
+		}
+
+		BatchWatchdog watchdog = new BatchWatchdog(getName(),
+				new File(getTemporaryDir(), "watchdog_" + executionCount.incrementAndGet()),
+				getBuildDirectory("iplass/launcher"),
+				getBuildDirectory("iplass/watchdog"),
+				getBatchTimeout().getOrNull(),
+				getInactivityTimeout().getOrNull(),
+				getThreadDumpCount().getOrElse(3),
+				getThreadDumpInterval().getOrElse(Duration.ofSeconds(5)),
+				getLogger());
+
+		watchdog.run(() -> execute(spec -> {
+			configure.execute(spec);
+			watchdog.configure(spec);
+		}));
+	}
+
+	/**
+	 * Launch the batch JVM speculatively. internal use.
+	 *
+	 * <p>
+	 * Called when the task graph is ready. The JVM is started with the dependencies (files of the classpath outside the root project directory),
+	 * so that it does not wait for the compilation of the project.
+	 * </p>
+	 */
+	void prelaunch() {
+		if (!useSpeculativeLaunch() || !getSpeculativeLaunchService().isPresent() || useInProcess()) {
+			return;
+		}
+		if (getBatchTimeout().isPresent() || getInactivityTimeout().isPresent()) {
+			getLogger().info("{} speculative launch is not used with the watchdog.", getName());
+			return;
+		}
+
+		try {
+			String rootDirectory = getProject().getRootDir().getAbsolutePath() + File.separator;
+			List<File> dependencies = getClasspathFiles().getFiles().stream()
+					.filter(f -> f.isFile() && !f.getAbsolutePath().startsWith(rootDirectory))
+					.collect(Collectors.toList());
+
+			JavaLauncher javaLauncher = getJavaLauncher().orElse(getPluginExtension().getJavaLauncher()).getOrNull();
+			String executable = null != javaLauncher ? javaLauncher.getExecutablePath().getAsFile().getAbsolutePath() : null;
+
+			SpeculativeLaunch launch = SpeculativeLaunch.start(getName(), getBuildDirectory("iplass/speculative/" + getName()),
+					getBuildDirectory("iplass/launcher"), executable, getJvmArgs().getOrElse(Collections.emptyList()), dependencies, getLogger());
+			getSpeculativeLaunchService().get().put(getPath(), launch);
+
+		} catch (RuntimeException e) {
+			// the speculative launch is an optimization. the batch is executed with javaexec.
+			getLogger().warn("{} speculative launch failed. {}", getName(), e.getMessage());
+		}
+	}
+
+	/**
+	 * Hand over the execution to the speculatively launched JVM. internal use.
+	 * @param launch launched JVM.
+	 * @param configure individual configuration of the execution.
+	 * @return true if handed over.
+	 */
+	private boolean handover(SpeculativeLaunch launch, Action<? super JavaExecSpec> configure) {
+		if (getBatchTimeout().isPresent() || getInactivityTimeout().isPresent()) {
+			return false;
+		}
+
+		RecordingJavaExecSpec recording = new RecordingJavaExecSpec(getProject());
+		try {
+			configureInner(recording.getSpec());
+			configure.execute(recording.getSpec());
+		} catch (UnsupportedOperationException e) {
+			getLogger().info("{} speculative launch is not used. {}", getName(), e.getMessage());
+			return false;
+		}
+
+		// the classpath is handed over from the classpath files. the launcher directory and the pathing jar are not needed.
+		Set<File> classpath = getClasspathFiles().getFiles();
+		File launcherDirectory = getBuildDirectory("iplass/launcher");
+		File pathingDirectory = getBuildDirectory("iplass/classpath");
+		for (File entry : recording.getClasspath()) {
+			if (!classpath.contains(entry) && !entry.equals(launcherDirectory) && !entry.getParentFile().equals(pathingDirectory)) {
+				getLogger().info("{} speculative launch is not used. The classpath entry '{}' is added by the task.", getName(), entry);
+				return false;
+			}
+		}
+
+		return launch.handover(recording, classpath);
+	}
+
+	/**
+	 * Execute the batch in a Gradle worker daemon. internal use.
+	 *
+	 * <p>
+	 * The batch is executed with the process isolation of the Worker API only if the execution needs nothing but system properties
+	 * (no java launcher, no jvm options, no standard input and no watchdog) and the security manager is allowed. Otherwise, the batch is executed with javaexec.
+	 * The worker daemon is reused by Gradle while the system properties are the same, and the class loader of the batch is reused
+	 * by the executions of a build while the content of the classpath is the same. See {@link InProcessAction}.
+	 * </p>
+	 *
+	 * @param configure individual configuration of the execution.
+	 * @return true if executed in a worker daemon.
+	 */
+	private boolean executeInProcess(Action<? super JavaExecSpec> configure) {
+		if (getBatchTimeout().isPresent() || getInactivityTimeout().isPresent()) {
+			return false;
+		}
+		// System.exit of the batch is prevented with the security manager, which can not be installed on Java 24 or later.
+		if (JavaVersion.current().compareTo(JavaVersion.toVersion(24)) >= 0) {
+			getLogger().info("{} in-process execution is not used. The security manager is not allowed on Java {}.", getName(), JavaVersion.current());
+			return false;
+		}
+
+		RecordingJavaExecSpec recording = new RecordingJavaExecSpec(getProject());
+		try {
+			configureInner(recording.getSpec());
+			configure.execute(recording.getSpec());
+		} catch (UnsupportedOperationException e) {
+			getLogger().info("{} in-process execution is not used. {}", getName(), e.getMessage());
+			return false;
+		}
+
+		List<String> options = recording.getJvmArgs().stream().filter(a -> !a.startsWith("-D")).collect(Collectors.toList());
+		if (null != recording.getExecutable() || !options.isEmpty()) {
+			getLogger().info("{} in-process execution is not used. The java launcher or the jvm options {} are set.", getName(), options);
+			return false;
+		}
+
+		// /temp/dir/inprocess_n.out, /temp/dir/inprocess_n.err
+		int count = executionCount.incrementAndGet();
+		File outputFile = new File(getTemporaryDir(), "inprocess_" + count + ".out");
+		File errorFile = new File(getTemporaryDir(), "inprocess_" + count + ".err");
+
+		// the batch classpath is loaded by the action, so that the class loader is created again when the content changes.
+		WorkQueue queue = getWorkerExecutor().processIsolation(spec -> spec.forkOptions(fork -> {
+			fork.systemProperties(recording.getAllSystemProperties());
+			if (JavaVersion.current().compareTo(JavaVersion.VERSION_18) >= 0) {
+				fork.jvmArgs("-Djava.security.manager=allow");
+			}
+		}));
+		queue.submit(InProcessAction.class, parameters -> {
+			parameters.getClasspath().from(recording.getClasspath());
+			parameters.getSystemProperties().set(recording.getAllSystemProperties());
+			parameters.getMainClass().set(recording.getMainClass());
+			parameters.getArgs().set(recording.getArgs());
+			parameters.getOutputFile().set(outputFile);
+			parameters.getErrorFile().set(errorFile);
+		});
+
+		try {
+			queue.await();
+		} catch (WorkerExecutionException e) {
+			// the worker daemon is terminated if the batch halts the JVM, e.g. with Runtime.halt.
+			throw new GradleException(recording.getMainClass() + " failed in the worker daemon. If the worker daemon is terminated, set inProcess = false.", e);
+		} finally {
+			copy(outputFile, recording.getStandardOutput());
+			copy(errorFile, recording.getErrorOutput());
+		}
+
+		recordHistory(TaskHistory.JVM, "worker java " + JavaVersion.current().getMajorVersion());
+		return true;
+	}
+
+	/**
+	 * Copy the output file of the in-process execution. internal use.
+	 * @param file output file.
+	 * @param output destination.
+	 */
+	private static void copy(File file, OutputStream output) {
+		if (!file.exists()) {
+			return;
+		}
+
+		try {
+			Files.copy(file.toPath(), output);
+			output.flush();
+		} catch (IOException e) {
+			throw new GradleException("Unable to read file '" + file.getAbsolutePath() + "'.", e);
+		}
+	}
+
+	/**
+	 * javaexec execution. internal use.
+	 * @param configure individual configuration of the execution.
+	 */
+	private void execute(Action<? super JavaExecSpec> configure) {
+		ExecResult result = getExecOperations().javaexec(spec -> {
+			configureInner(spec);
+			configure.execute(spec);
+		});
+		result.assertNormalExitValue().rethrowFailure();
+	}
+
 	/**
 	 * javaexec configure. internal use.
 	 * @param spec JavaExecSpec
 	 */
 	private void configureInner(JavaExecSpec spec) {
 
-		JavaPluginExtension javaPluginExtension = getProject().getExtensions().getByType(JavaPluginExtension.class);
-
 		spec.jvmArgs("-Dbatch.language=" + getLanguage());
 
 		String serviceConfigPath = getServiceConfigPath();
@@ -94,15 +476,107 @@ public abstract class JavaBatchTask extends AbstractTask {
 			spec.jvmArgs(getJvmArgs().get());
 		}
 
-		FileCollection classpathFiles = getPluginExtension().getClasspath().isEmpty()
-				// src/main/* and configurations.runtimeClasspath
-				? javaPluginExtension.getSourceSets().getByName(SourceSet.MAIN_SOURCE_SET_NAME).getRuntimeClasspath()
-				// set extension value
-				: getPluginExtension().getClasspath();
+		FileCollection classpathFiles = getClasspathFiles();
+		if (getPluginExtension().getPathingJar().getOrElse(Boolean.FALSE)) {
+			// build/iplass/classpath/pathing-${fingerprint}.jar
+			spec.classpath(PathingJar.get(getBuildDirectory("iplass/classpath"), classpathFiles));
+		} else {
+			classpathFiles.forEach(f -> spec.classpath(f));
+		}
 
-		classpathFiles.forEach(f -> spec.classpath(f));
+		JavaLauncher javaLauncher = getJavaLauncher().orElse(getPluginExtension().getJavaLauncher()).getOrNull();
+		if (null != javaLauncher) {
+			validateJavaVersion(javaLauncher, classpathFiles);
+			spec.setExecutable(javaLauncher.getExecutablePath().getAsFile().getAbsolutePath());
+		}
+	}
 
-		configure(spec);
+	/**
+	 * Get the java language version of the batch.
+	 *
+	 * <p>
+	 * If the java launcher is not set, the version of the java used by Gradle is returned.
+	 * </p>
+	 *
+	 * @return java language version of the batch.
+	 */
+	@Internal
+	protected int getJavaLanguageVersion() {
+		JavaLauncher javaLauncher = getJavaLauncher().orElse(getPluginExtension().getJavaLauncher()).getOrNull();
+		if (null != javaLauncher) {
+			return javaLauncher.getMetadata().getLanguageVersion().asInt();
+		}
+		return Integer.parseInt(JavaVersion.current().getMajorVersion());
+	}
+
+	/**
+	 * Validate the java version of the launcher against the iPLAss compatibility matrix.
+	 * @param javaLauncher java launcher.
+	 * @param classpathFiles classpath of the batch.
+	 */
+	private void validateJavaVersion(JavaLauncher javaLauncher, FileCollection classpathFiles) {
+		int javaVersion = javaLauncher.getMetadata().getLanguageVersion().asInt();
+		String iplassVersion = IplassCompatibility.findIplassVersion(classpathFiles);
+		if (null == iplassVersion) {
+			getLogger().info("iplass-core is not found in the classpath. java {} is not validated.", javaVersion);
+			return;
+		}
+
+		try {
+			IplassCompatibility.validate(iplassVersion, javaVersion);
+		} catch (IllegalStateException e) {
+			throw new GradleException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Get the classpath of the batch.
+	 *
+	 * <p>
+	 * If the classpath is not set in the extension, sourceSets.main.runtimeClasspath is used.
+	 * </p>
+	 *
+	 * @return classpath of the batch.
+	 */
+	private FileCollection getClasspathFiles() {
+		if (!getPluginExtension().getClasspath().isEmpty()) {
+			// set extension value
+			return getPluginExtension().getClasspath();
+		}
+
+		JavaPluginExtension javaPluginExtension = getProject().getExtensions().findByType(JavaPluginExtension.class);
+		if (null == javaPluginExtension) {
+			throw new GradleException("The classpath is not set. Set the classpath in the extension or apply the java plugin.");
+		}
+
+		// src/main/* and configurations.runtimeClasspath
+		return javaPluginExtension.getSourceSets().getByName(SourceSet.MAIN_SOURCE_SET_NAME).getRuntimeClasspath();
+	}
+
+	/**
+	 * Get in-process execution usage.
+	 *
+	 * <p>
+	 * If true, the batch is executed in a Gradle worker daemon instead of javaexec when the execution allows it. Default value is false.
+	 * </p>
+	 *
+	 * @return if true, execute the batch in a worker daemon.
+	 */
+	protected boolean useInProcess() {
+		return false;
+	}
+
+	/**
+	 * Get speculative launch usage.
+	 *
+	 * <p>
+	 * If true, the batch JVM is launched when the task graph is ready. Subclasses return false if the execution can not be handed over.
+	 * </p>
+	 *
+	 * @return if true, launch the batch JVM speculatively.
+	 */
+	protected boolean useSpeculativeLaunch() {
+		return getSpeculativeLaunch().orElse(getPluginExtension().getSpeculativeLaunch()).getOrElse(Boolean.FALSE);
 	}
 
 	/**
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Pathing jar utility.
+ *
+ * <p>
+ * A pathing jar is an empty jar whose manifest Class-Path lists the classpath entries.
+ * Using it as the only classpath entry keeps the command line short regardless of the number of classpath entries.
+ * </p>
+ *
+ * <p>
+ * The jar is named by the fingerprint of the classpath entries and is reused between builds.
+ * It is regenerated only when the classpath entries change.
+ * The contents of the entries are not included in the fingerprint, because the jar refers to them by path.
+ * </p>
+ */
+public class PathingJar {
+	/** file name prefix */
+	private static final String PREFIX = "pathing-";
+	/** file name suffix */
+	private static final String SUFFIX = ".jar";
+
+	/**
+	 * private constructor.
+	 */
+	private PathingJar() {
+	}
+
+	/**
+	 * Get the pathing jar of the classpath.
+	 *
+	 * <p>
+	 * If the pathing jar of the same classpath exists in the directory, it is reused.
+	 * Otherwise, a new pathing jar is created and the other pathing jars in the directory are deleted.
+	 * </p>
+	 *
+	 * @param directory directory to store the pathing jar.
+	 * @param classpath classpath entries.
+	 * @return pathing jar.
+	 */
+	public static synchronized File get(File directory, Iterable<File> classpath) {
+		List<String> entries = new ArrayList<>();
+		classpath.forEach(f -> entries.add(f.toURI().toString()));
+
+		File jar = new File(directory, PREFIX + fingerprint(entries) + SUFFIX);
+		if (jar.exists()) {
+			return jar;
+		}
+
+		directory.mkdirs();
+		File[] olds = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+		if (null != olds) {
+			for (File old : olds) {
+				old.delete();
+			}
+		}
+
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, String.join(" ", entries));
+
+		File temp = new File(directory, jar.getName() + ".tmp");
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+			// manifest only.
+			new JarOutputStream(out, manifest).finish();
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to create file '" + temp.getAbsolutePath() + "'.", e);
+		}
+
+		try {
+			Files.move(temp.toPath(), jar.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed during file operation.", e);
+		}
+
+		return jar;
+	}
+
+	private static String fingerprint(List<String> entries) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			entries.forEach(e -> digest.update((e + "\n").getBytes(StandardCharsets.UTF_8)));
+
+			StringBuilder hex = new StringBuilder();
+			byte[] hash = digest.digest();
+			// 16 bytes are enough to identify the classpath.
+			for (int i = 0; i < 16; i++) {
+				hex.append(String.format("%02x", hash[i]));
+			}
+			return hex.toString();
+
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("Hash algorithm SHA-256 is not available.", e);
+		}
+	}
+}
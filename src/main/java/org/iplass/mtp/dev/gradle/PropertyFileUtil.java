@@ -17,6 +17,7 @@ package org.iplass.mtp.dev.gradle;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -24,9 +25,14 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.stream.Collectors;
 
 /**
  * Property file utility.
@@ -57,6 +63,36 @@ public class PropertyFileUtil {
 		}
 	}
 
+	/**
+	 * Save the property file in a deterministic form.
+	 *
+	 * <p>
+	 * The keys are sorted, no timestamp comment is written and lines end with LF, so the same values are always saved as the same content.
+	 * </p>
+	 *
+	 * @param file destination file.
+	 * @param propValues property key and value.
+	 */
+	public static void saveSorted(File file, Map<String, String> propValues) {
+		Properties prop = new Properties();
+		propValues.forEach((k, v) -> prop.put(k, v));
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try {
+			prop.store(output, null);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed during file operation.", e);
+		}
+
+		// an entry is written in a line with escapes. the timestamp comment is removed.
+		List<String> lines = Arrays.stream(new String(output.toByteArray(), StandardCharsets.ISO_8859_1).split("\\r?\\n")).filter(l -> !l.isEmpty() && !l.startsWith("#"))
+				.sorted().collect(Collectors.toList());
+		try {
+			Files.write(file.toPath(), lines.stream().map(l -> l + "\n").collect(Collectors.joining()).getBytes(StandardCharsets.ISO_8859_1));
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to create file '" + file.getAbsolutePath() + "'.", e);
+		}
+	}
+
 	/**
 	 * Load the property file.
 	 * @param file read file.
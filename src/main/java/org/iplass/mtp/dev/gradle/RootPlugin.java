@@ -15,8 +15,18 @@
  */
 package org.iplass.mtp.dev.gradle;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
 import org.gradle.api.Project;
 import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.provider.Provider;
+import org.iplass.mtp.dev.gradle.history.SchedulingHintService;
+import org.iplass.mtp.dev.gradle.history.TaskHistory;
+import org.iplass.mtp.dev.gradle.history.TaskHistoryPlugin;
+import org.iplass.mtp.dev.gradle.launcher.SpeculativeLaunchService;
+import org.iplass.mtp.dev.gradle.metadata.MetaDataPlugin;
 import org.iplass.mtp.dev.gradle.tools.batch.ToolsBatchPlugin;
 
 /**
@@ -27,13 +37,45 @@ import org.iplass.mtp.dev.gradle.tools.batch.ToolsBatchPlugin;
 public class RootPlugin implements org.gradle.api.Plugin<Project> {
 	/** plugin extension name */
 	public static final String EXTENSION_NAME = "iplass";
+	/** speculative launch build service name */
+	public static final String SPECULATIVE_LAUNCH_SERVICE_NAME = "iplassSpeculativeLaunch";
+	/** scheduling hint build service name */
+	public static final String SCHEDULING_HINT_SERVICE_NAME = "iplassSchedulingHint";
 
 	@Override
 	public void apply(Project project) {
 		project.getPlugins().apply(JavaPlugin.class);
-		project.getExtensions().create(EXTENSION_NAME, RootPluginExtension.class);
+		RootPluginExtension extension = project.getExtensions().create(EXTENSION_NAME, RootPluginExtension.class);
+
+		// tasks are registered lazily, and are not realized until they are needed.
+		project.getPluginManager().apply(ToolsBatchPlugin.class);
+		project.getPluginManager().apply(MetaDataPlugin.class);
+		project.getPluginManager().apply(TaskHistoryPlugin.class);
+
+		// the batch JVMs are launched speculatively when the task graph is ready, and discarded if not used when the build finishes.
+		Provider<SpeculativeLaunchService> speculativeLaunchService = project.getGradle().getSharedServices()
+				.registerIfAbsent(SPECULATIVE_LAUNCH_SERVICE_NAME, SpeculativeLaunchService.class, spec -> {
+				});
+		project.getTasks().withType(JavaBatchTask.class).configureEach(t -> {
+			t.getSpeculativeLaunchService().set(speculativeLaunchService);
+			t.usesService(speculativeLaunchService);
+		});
+		project.getGradle().getTaskGraph().whenReady(graph -> graph.getAllTasks().stream()
+				.filter(t -> t instanceof JavaBatchTask && t.getProject() == project)
+				.forEach(t -> ((JavaBatchTask) t).prelaunch()));
 
-		project.getPlugins().apply(ToolsBatchPlugin.class);
+		// the longest batches of the task history are started first. the ordering is ignored by Gradle if it makes a cycle.
+		// the tasks of every project that applies the plugin are shared through the service, so that the ordering crosses the projects.
+		Provider<SchedulingHintService> schedulingHintService = project.getGradle().getSharedServices()
+				.registerIfAbsent(SCHEDULING_HINT_SERVICE_NAME, SchedulingHintService.class, spec -> spec.getParameters().getHistoryFile()
+						.set(TaskHistory.getFile(project.getGradle().getGradleUserHomeDir(), project.getRootDir())));
+		schedulingHintService.get().registerProject(project.getPath(), () -> project.getTasks().getNames());
+		project.getTasks().withType(JavaBatchTask.class).configureEach(t -> t.shouldRunAfter((Callable<List<String>>) () -> {
+			if (!extension.getSchedulingHint().getOrElse(Boolean.FALSE)) {
+				return Collections.emptyList();
+			}
+			return schedulingHintService.get().getLongerTasks(t.getPath());
+		}));
 	}
 
 }
@@ -18,6 +18,7 @@ package org.iplass.mtp.dev.gradle;
 import org.gradle.api.file.ConfigurableFileCollection;
 import org.gradle.api.plugins.ExtensionAware;
 import org.gradle.api.provider.Property;
+import org.gradle.jvm.toolchain.JavaLauncher;
 
 /**
  * root plugin extension for plugin
@@ -58,4 +59,87 @@ public interface RootPluginExtension extends ExtensionAware {
 	 * @return classpath
 	 */
 	ConfigurableFileCollection getClasspath();
+
+	/**
+	 * Get pathing jar usage.
+	 *
+	 * <p>
+	 * If true, JavaBatchTask is executed with a pathing jar whose manifest lists the classpath, instead of listing the classpath on the command line.
+	 * The pathing jar is reused until the classpath changes.
+	 * </p>
+	 *
+	 * @return if true, use a pathing jar.
+	 */
+	Property<Boolean> getPathingJar();
+
+	/**
+	 * Get java launcher.
+	 *
+	 * <p>
+	 * Used to execute JavaBatchTask. e.g. javaToolchains.launcherFor { languageVersion = JavaLanguageVersion.of(21) }
+	 * The java version is validated against the iPLAss compatibility matrix.
+	 * </p>
+	 *
+	 * @return java launcher.
+	 */
+	Property<JavaLauncher> getJavaLauncher();
+
+	/**
+	 * Get speculative launch usage.
+	 *
+	 * <p>
+	 * If true, the JVM of JavaBatchTask is launched with the dependencies while the project is compiled, and the project classes,
+	 * the main class and the arguments are handed over when the task is executed. If the task is skipped, the JVM is discarded.
+	 * </p>
+	 *
+	 * @return if true, launch the batch JVM speculatively.
+	 */
+	Property<Boolean> getSpeculativeLaunch();
+
+	/**
+	 * Get task history usage.
+	 *
+	 * <p>
+	 * If true, the executions of the tasks are recorded in the task history under the Gradle user home. Default value is false.
+	 * </p>
+	 *
+	 * @return if true, record the task history.
+	 */
+	Property<Boolean> getTaskHistory();
+
+	/**
+	 * Get the metadata bundle task name.
+	 *
+	 * <p>
+	 * The bundle file of the task is published as the metadata bundle variant (iplassMetaDataBundleElements configuration).
+	 * Default value is "metaSyncRdbToFile".
+	 * </p>
+	 *
+	 * @return task name that exports the metadata bundle.
+	 */
+	Property<String> getMetaDataBundleTask();
+
+	/**
+	 * Get scheduling hint usage.
+	 *
+	 * <p>
+	 * If true, each JavaBatchTask should run after all tasks whose expected durations in the task history are longer, in any project that applies the plugin,
+	 * so that the longest batches are started first. The task history must be enabled. Default value is false.
+	 * </p>
+	 *
+	 * @return if true, order the tasks by the expected durations.
+	 */
+	Property<Boolean> getSchedulingHint();
+
+	/**
+	 * Get in-process execution usage.
+	 *
+	 * <p>
+	 * If true, the tools batch tasks marked as inProcess (e.g. serviceConfigView) are executed in a Gradle worker daemon (Worker API process isolation)
+	 * instead of a new JVM for each execution. Default value is false.
+	 * </p>
+	 *
+	 * @return if true, execute the marked tasks in process.
+	 */
+	Property<Boolean> getInProcess();
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Checkpoint of the completed processing units of a task.
+ *
+ * <p>
+ * The completed units are saved in a property file each time a unit completes, so that an interrupted task can resume from the last completed unit.
+ * The file is replaced atomically, so the checkpoint is not corrupted even if the process dies while saving.
+ * </p>
+ *
+ * <p>
+ * The checkpoint has a scope (e.g. tenant id and directory). If the scope of the saved checkpoint is different, the completed units are discarded,
+ * so that the units completed for another tenant or directory are not skipped.
+ * </p>
+ */
+public class TaskCheckpoint {
+	/** property key of the scope. not a valid unit name */
+	static final String SCOPE_KEY = "*scope";
+
+	/** checkpoint file */
+	private final File file;
+	/** scope of the completed units */
+	private final String scope;
+	/** completed unit and completion date */
+	private final Map<String, String> completed = new LinkedHashMap<>();
+
+	/**
+	 * constructor
+	 *
+	 * <p>
+	 * If the checkpoint file exists and the scope is the same, the completed units are loaded.
+	 * If the scope is different, the checkpoint file is deleted.
+	 * </p>
+	 *
+	 * @param file checkpoint file.
+	 * @param scope scope of the completed units. e.g. "tenantId=1,directory=/path/to/dir"
+	 */
+	public TaskCheckpoint(File file, String scope) {
+		this.file = file;
+		this.scope = scope;
+
+		if (file.exists()) {
+			Properties props = PropertyFileUtil.load(file);
+			if (!scope.equals(props.getProperty(SCOPE_KEY))) {
+				clear();
+				return;
+			}
+
+			props.remove(SCOPE_KEY);
+			props.stringPropertyNames().stream().sorted().forEach(k -> completed.put(k, props.getProperty(k)));
+		}
+	}
+
+	/**
+	 * @return checkpoint file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Check if the unit is completed.
+	 * @param unit processing unit.
+	 * @return true if completed.
+	 */
+	public synchronized boolean isCompleted(String unit) {
+		return completed.containsKey(unit);
+	}
+
+	/**
+	 * @return scope of the completed units
+	 */
+	public String getScope() {
+		return scope;
+	}
+
+	/**
+	 * @return completed units.
+	 */
+	public synchronized Set<String> getCompleted() {
+		return Collections.unmodifiableSet(new LinkedHashSet<>(completed.keySet()));
+	}
+
+	/**
+	 * Record the unit as completed and save the checkpoint file.
+	 * @param unit completed processing unit.
+	 */
+	public synchronized void complete(String unit) {
+		completed.put(unit, ZonedDateTime.now().toString());
+		save();
+	}
+
+	/**
+	 * Delete the checkpoint file and clear the completed units.
+	 */
+	public synchronized void clear() {
+		completed.clear();
+		if (file.exists() && !file.delete()) {
+			throw new RuntimeException("Unable to delete file '" + file.getAbsolutePath() + "'.");
+		}
+	}
+
+	/**
+	 * Save the checkpoint file atomically.
+	 */
+	private void save() {
+		file.getParentFile().mkdirs();
+		File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+		Map<String, String> props = new LinkedHashMap<>();
+		props.put(SCOPE_KEY, scope);
+		props.putAll(completed);
+		PropertyFileUtil.save(temp, props);
+
+		try {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed during file operation.", e);
+		}
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.history;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+/**
+ * Build service that gives the scheduling hints of the tasks from the task history.
+ *
+ * <p>
+ * The expected duration of a task is the median of the durations of its latest successful runs ({@link #WINDOW} runs, all tenants).
+ * A task should run after all tasks whose expected durations are longer, in any project that registered its tasks,
+ * so that the longest tasks are started first when the workers are available. Tasks without history have no hint.
+ * </p>
+ *
+ * <p>
+ * The hints are resolved while the task graph is calculated, before it can tell which tasks are scheduled.
+ * So a task is ordered after every longer task rather than only the next one: a longer task that is not scheduled is ignored by Gradle,
+ * and the order of the other tasks is kept.
+ * </p>
+ *
+ * <p>
+ * The history is read once per build.
+ * </p>
+ */
+public abstract class SchedulingHintService implements BuildService<SchedulingHintService.Params> {
+	/** number of runs of the expected duration */
+	public static final int WINDOW = 10;
+
+	/** logger */
+	private static final Logger LOGGER = Logging.getLogger(SchedulingHintService.class);
+
+	/** task path, expected duration */
+	private Map<String, Long> expectedDurations;
+	/** project path, names of the tasks of the project */
+	private final Map<String, Supplier<Set<String>>> projects = new ConcurrentHashMap<>();
+
+	/**
+	 * Register the tasks of a project, so that the tasks of other projects can be ordered after them.
+	 * @param projectPath project path.
+	 * @param taskNames names of the tasks of the project. Must not realize the tasks.
+	 */
+	public void registerProject(String projectPath, Supplier<Set<String>> taskNames) {
+		projects.put(projectPath, taskNames);
+	}
+
+	/**
+	 * Get the expected durations.
+	 * @return task path and expected duration (milliseconds).
+	 */
+	public synchronized Map<String, Long> getExpectedDurations() {
+		if (null == expectedDurations) {
+			expectedDurations = load();
+		}
+		return expectedDurations;
+	}
+
+	/**
+	 * Get the tasks that the task should run after.
+	 * @param taskPath task path.
+	 * @return paths of the registered tasks whose expected durations are longer than the task, the longest first. empty if the task has no hint.
+	 */
+	public List<String> getLongerTasks(String taskPath) {
+		return getLongerTasks(getExpectedDurations(), taskPath, this::isRegistered);
+	}
+
+	/**
+	 * Check whether the task of the path exists in a registered project.
+	 * @param taskPath task path.
+	 * @return true if the task exists.
+	 */
+	private boolean isRegistered(String taskPath) {
+		int separator = taskPath.lastIndexOf(':');
+		Supplier<Set<String>> taskNames = projects.get(0 == separator ? ":" : taskPath.substring(0, separator));
+		return null != taskNames && taskNames.get().contains(taskPath.substring(separator + 1));
+	}
+
+	private Map<String, Long> load() {
+		List<Map<String, String>> records;
+		try {
+			records = new TaskHistory(getParameters().getHistoryFile().get().getAsFile()).read();
+		} catch (RuntimeException e) {
+			// the history is not required to execute the tasks.
+			LOGGER.warn("Unable to read the task history. {}", e.getMessage());
+			return Collections.emptyMap();
+		}
+
+		Map<String, Long> expected = getExpectedDurations(records);
+		LOGGER.info("expected durations = {}", expected);
+		return expected;
+	}
+
+	/**
+	 * Get the expected durations of the records.
+	 * @param records task history records.
+	 * @return task path and expected duration (milliseconds).
+	 */
+	static Map<String, Long> getExpectedDurations(List<Map<String, String>> records) {
+		Map<String, List<Long>> durations = new HashMap<>();
+		for (Map<String, String> record : records) {
+			if (TaskHistory.SUCCESS.equals(record.get(TaskHistory.OUTCOME)) && null != record.get(TaskHistory.DURATION)) {
+				durations.computeIfAbsent(record.get(TaskHistory.TASK), k -> new ArrayList<>()).add(Long.valueOf(record.get(TaskHistory.DURATION)));
+			}
+		}
+
+		Map<String, Long> expected = new HashMap<>();
+		durations.forEach((task, values) -> {
+			List<Long> latest = new ArrayList<>(values.subList(Math.max(0, values.size() - WINDOW), values.size()));
+			Collections.sort(latest);
+			expected.put(task, latest.get((latest.size() - 1) / 2));
+		});
+		return expected;
+	}
+
+	/**
+	 * Get the tasks whose expected durations are longer.
+	 *
+	 * <p>
+	 * Tasks of the same duration are ordered by the path.
+	 * </p>
+	 *
+	 * @param durations task path and expected duration.
+	 * @param taskPath task path.
+	 * @param candidate predicate whether the task of the path can be ordered with the task (e.g. the task exists).
+	 * @return task paths, the longest first. empty if the task has no hint.
+	 */
+	static List<String> getLongerTasks(Map<String, Long> durations, String taskPath, Predicate<String> candidate) {
+		Long duration = durations.get(taskPath);
+		if (null == duration) {
+			return Collections.emptyList();
+		}
+
+		Comparator<Map.Entry<String, Long>> order = Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+		Map.Entry<String, Long> self = new AbstractMap.SimpleEntry<>(taskPath, duration);
+		return durations.entrySet().stream()
+				.filter(e -> order.compare(e, self) < 0 && candidate.test(e.getKey()))
+				.sorted(order)
+				.map(Map.Entry::getKey)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Parameters of the service.
+	 */
+	public interface Params extends BuildServiceParameters {
+		/**
+		 * @return task history file.
+		 */
+		RegularFileProperty getHistoryFile();
+	}
+}
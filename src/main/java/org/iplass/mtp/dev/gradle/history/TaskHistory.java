@@ -0,0 +1,262 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.history;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local history store of task executions.
+ *
+ * <p>
+ * Each execution is appended to the history file as a line of tab-separated "key=value" fields.
+ * The file is locked while it is written, so tasks of parallel builds can append to the same file.
+ * When the file exceeds 1 MB, only the latest 200 records of each task and tenant are retained.
+ * </p>
+ */
+public class TaskHistory {
+	/** key: execution time (epoch milliseconds) */
+	public static final String TIME = "time";
+	/** key: task path */
+	public static final String TASK = "task";
+	/** key: tenant id */
+	public static final String TENANT = "tenant";
+	/** key: outcome (SUCCESS or FAILED) */
+	public static final String OUTCOME = "outcome";
+	/** key: duration (milliseconds) */
+	public static final String DURATION = "duration";
+	/** key: phase breakdown (name=milliseconds, comma-separated) */
+	public static final String PHASES = "phases";
+	/** key: number of source paths or entities */
+	public static final String SOURCE_COUNT = "sourceCount";
+	/** key: number of metadata files */
+	public static final String METADATA_VOLUME = "metadataVolume";
+	/** key: JVM settings */
+	public static final String JVM = "jvm";
+
+	/** outcome: success */
+	public static final String SUCCESS = "SUCCESS";
+	/** outcome: failed */
+	public static final String FAILED = "FAILED";
+
+	/** file size to compact (bytes) */
+	private static final long COMPACT_SIZE = 1024L * 1024L;
+	/** number of records retained for each task and tenant on compaction */
+	private static final int RETAINED_RECORDS = 200;
+
+	/** history file */
+	private final File file;
+	/** file size to compact (bytes) */
+	private final long compactSize;
+	/** number of records retained for each task and tenant on compaction */
+	private final int retainedRecords;
+
+	/**
+	 * constructor
+	 * @param file history file.
+	 */
+	public TaskHistory(File file) {
+		this(file, COMPACT_SIZE, RETAINED_RECORDS);
+	}
+
+	/**
+	 * constructor
+	 * @param file history file.
+	 * @param compactSize file size to compact (bytes).
+	 * @param retainedRecords number of records retained for each task and tenant on compaction.
+	 */
+	TaskHistory(File file, long compactSize, int retainedRecords) {
+		this.file = file;
+		this.compactSize = compactSize;
+		this.retainedRecords = retainedRecords;
+	}
+
+	/**
+	 * Get the history file of the root project.
+	 * @param gradleUserHome Gradle user home directory.
+	 * @param rootDirectory root project directory.
+	 * @return history file. (${gradleUserHome}/iplass/history/${hash of rootDirectory}.tsv)
+	 */
+	public static File getFile(File gradleUserHome, File rootDirectory) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] hash = digest.digest(rootDirectory.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+
+			// 8 bytes are enough to identify the project.
+			StringBuilder hex = new StringBuilder();
+			for (int i = 0; i < 8; i++) {
+				hex.append(String.format("%02x", hash[i]));
+			}
+			return new File(new File(gradleUserHome, "iplass/history"), hex + ".tsv");
+
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("Hash algorithm SHA-256 is not available.", e);
+		}
+	}
+
+	/**
+	 * Append a record.
+	 * @param record key and value of the record.
+	 */
+	public void append(Map<String, String> record) {
+		file.getParentFile().mkdirs();
+
+		synchronized (TaskHistory.class) {
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				FileLock lock = channel.lock();
+				try {
+					channel.position(channel.size());
+					channel.write(ByteBuffer.wrap((format(record) + "\n").getBytes(StandardCharsets.UTF_8)));
+
+					if (compactSize < channel.size()) {
+						compact(channel);
+					}
+				} finally {
+					lock.release();
+				}
+
+			} catch (IOException e) {
+				throw new RuntimeException("Unable to write file '" + file.getAbsolutePath() + "'.", e);
+			}
+		}
+	}
+
+	/**
+	 * Read all records.
+	 * @return records in the order of appending. empty if the file does not exist.
+	 */
+	public List<Map<String, String>> read() {
+		if (!file.exists()) {
+			return Collections.emptyList();
+		}
+
+		synchronized (TaskHistory.class) {
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				FileLock lock = channel.lock();
+				try {
+					return read(channel);
+				} finally {
+					lock.release();
+				}
+
+			} catch (IOException e) {
+				throw new RuntimeException("Unable to read file '" + file.getAbsolutePath() + "'.", e);
+			}
+		}
+	}
+
+	/**
+	 * @return history file.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Retain only the latest records of each task and tenant.
+	 * @param channel locked channel of the history file.
+	 * @throws IOException file operation error.
+	 */
+	private void compact(FileChannel channel) throws IOException {
+		List<Map<String, String>> records = read(channel);
+		Map<String, Integer> counts = new HashMap<>();
+		List<Map<String, String>> retained = new ArrayList<>();
+		for (int i = records.size() - 1; 0 <= i; i--) {
+			Map<String, String> record = records.get(i);
+			if (retainedRecords >= counts.merge(record.get(TASK) + "\t" + record.get(TENANT), 1, Integer::sum)) {
+				retained.add(0, record);
+			}
+		}
+
+		channel.truncate(0);
+		channel.position(0);
+		Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1);
+		for (Map<String, String> record : retained) {
+			writer.write(format(record));
+			writer.write("\n");
+		}
+		writer.flush();
+	}
+
+	private static List<Map<String, String>> read(FileChannel channel) throws IOException {
+		channel.position(0);
+		// the reader is not closed, because closing it closes the channel.
+		BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+		List<Map<String, String>> records = new ArrayList<>();
+		String line;
+		while (null != (line = reader.readLine())) {
+			if (!line.isEmpty()) {
+				records.add(parse(line));
+			}
+		}
+		return records;
+	}
+
+	private static String format(Map<String, String> record) {
+		StringBuilder line = new StringBuilder();
+		record.forEach((k, v) -> {
+			if (null == v) {
+				return;
+			}
+			if (0 < line.length()) {
+				line.append('\t');
+			}
+			line.append(k).append('=').append(v.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", ""));
+		});
+		return line.toString();
+	}
+
+	private static Map<String, String> parse(String line) {
+		Map<String, String> record = new LinkedHashMap<>();
+		for (String field : line.split("\t")) {
+			int separator = field.indexOf('=');
+			if (-1 == separator) {
+				continue;
+			}
+
+			String value = field.substring(separator + 1);
+			StringBuilder unescaped = new StringBuilder();
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if ('\\' == c && i + 1 < value.length()) {
+					char next = value.charAt(++i);
+					unescaped.append('t' == next ? '\t' : 'n' == next ? '\n' : next);
+				} else {
+					unescaped.append(c);
+				}
+			}
+			record.put(field.substring(0, separator), unescaped.toString());
+		}
+		return record;
+	}
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.history;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+
+/**
+ * Plugin for the task history.
+ */
+public class TaskHistoryPlugin implements Plugin<Project> {
+	/** taskHistoryReport task name */
+	public static final String TASK_HISTORY_REPORT_TASK_NAME = "taskHistoryReport";
+
+	@Override
+	public void apply(Project project) {
+		// register tasks.
+		project.getTasks().register(TASK_HISTORY_REPORT_TASK_NAME, TaskHistoryReportTask.class);
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.history;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Optional;
+import org.iplass.mtp.dev.gradle.AbstractTask;
+
+/**
+ * A task that reports the task history.
+ *
+ * <p>
+ * For each task and tenant, the number of runs, the percentiles of the durations of the successful runs and the trend are reported.
+ * The trend is the change of the median of the latest runs from the median of the runs before them (both {@link #getWindow()} runs).
+ * If regressionFactor is set, the task fails when the latest successful run of any task is slower than
+ * regressionFactor times the median of the previous runs (rolling median).
+ * </p>
+ */
+public abstract class TaskHistoryReportTask extends AbstractTask {
+	/** date time format of the report */
+	private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+	/**
+	 * @return number of runs of the rolling median. Default value is 10.
+	 */
+	@Input
+	@Optional
+	abstract protected Property<Integer> getWindow();
+
+	/**
+	 * @return if set, the task fails when the latest run is slower than this multiple of the rolling median.
+	 */
+	@Input
+	@Optional
+	abstract protected Property<Double> getRegressionFactor();
+
+	/**
+	 * @return report file. Default value is build/iplass/history/${taskName}.txt
+	 */
+	@Input
+	@Optional
+	abstract protected Property<String> getReportFile();
+
+	/**
+	 * constructor
+	 */
+	public TaskHistoryReportTask() {
+		super();
+
+		// the report depends on the history outside the project.
+		getOutputs().upToDateWhen(t -> false);
+	}
+
+	@Override
+	public void doTask() {
+		TaskHistory history = getTaskHistory();
+		int window = Math.max(1, getWindow().getOrElse(10));
+
+		// task and tenant, records.
+		Map<String, List<Map<String, String>>> groups = new LinkedHashMap<>();
+		history.read().forEach(r -> groups.computeIfAbsent(r.get(TaskHistory.TASK) + " tenant=" + r.get(TaskHistory.TENANT), k -> new ArrayList<>()).add(r));
+
+		List<String> lines = new ArrayList<>();
+		List<String> regressions = new ArrayList<>();
+		for (Map.Entry<String, List<Map<String, String>>> group : groups.entrySet()) {
+			List<Map<String, String>> records = group.getValue();
+			List<Long> durations = records.stream().filter(r -> TaskHistory.SUCCESS.equals(r.get(TaskHistory.OUTCOME)))
+					.map(r -> Long.valueOf(r.get(TaskHistory.DURATION))).collect(Collectors.toList());
+			long failed = records.size() - durations.size();
+			Map<String, String> last = records.get(records.size() - 1);
+
+			StringBuilder line = new StringBuilder(group.getKey());
+			line.append(" runs=").append(records.size()).append(" failed=").append(failed);
+			line.append(" last=").append(format(Long.parseLong(last.get(TaskHistory.DURATION)))).append(" (").append(last.get(TaskHistory.OUTCOME));
+			line.append(" ").append(TIME_FORMAT.format(Instant.ofEpochMilli(Long.parseLong(last.get(TaskHistory.TIME))).atZone(ZoneId.systemDefault()))).append(")");
+
+			if (!durations.isEmpty()) {
+				List<Long> sorted = new ArrayList<>(durations);
+				Collections.sort(sorted);
+				line.append(" p50=").append(format(percentile(sorted, 50)));
+				line.append(" p90=").append(format(percentile(sorted, 90)));
+				line.append(" p95=").append(format(percentile(sorted, 95)));
+				line.append(" max=").append(format(sorted.get(sorted.size() - 1)));
+			}
+
+			if (window < durations.size()) {
+				long recent = median(durations.subList(Math.max(0, durations.size() - window), durations.size()));
+				long before = median(durations.subList(Math.max(0, durations.size() - window * 2), durations.size() - window));
+				line.append(String.format(" trend=%+d%%", 0 == before ? 0 : Math.round((recent - before) * 100.0 / before)));
+			}
+
+			if (getRegressionFactor().isPresent() && 1 < durations.size()) {
+				long latest = durations.get(durations.size() - 1);
+				long rollingMedian = median(durations.subList(Math.max(0, durations.size() - 1 - window), durations.size() - 1));
+				if (latest > rollingMedian * getRegressionFactor().get()) {
+					regressions.add(group.getKey() + " " + format(latest) + " > " + getRegressionFactor().get() + " x " + format(rollingMedian));
+					line.append(" REGRESSION");
+				}
+			}
+
+			String phases = last.get(TaskHistory.PHASES);
+			if (null != phases && !phases.isEmpty()) {
+				line.append(System.lineSeparator()).append("    phases: ").append(phases);
+			}
+			for (String key : new String[] { TaskHistory.SOURCE_COUNT, TaskHistory.METADATA_VOLUME, TaskHistory.JVM }) {
+				if (null != last.get(key)) {
+					line.append(System.lineSeparator()).append("    ").append(key).append(": ").append(last.get(key));
+				}
+			}
+			lines.add(line.toString());
+		}
+
+		File reportFile = getReportFile().isPresent()
+				? getProject().file(getReportFile().get())
+				: new File(getBuildDirectory("iplass/history"), getName() + ".txt");
+		write(reportFile, lines);
+
+		lines.forEach(l -> getLogger().lifecycle(l));
+		getLogger().lifecycle("{} tasks in the history '{}'. report: {}", groups.size(), history.getFile().getAbsolutePath(), reportFile.getAbsolutePath());
+
+		if (!regressions.isEmpty()) {
+			throw new GradleException("Regression detected." + System.lineSeparator() + String.join(System.lineSeparator(), regressions));
+		}
+	}
+
+	@Override
+	protected boolean isHistoryEnabled() {
+		return false;
+	}
+
+	private void write(File file, List<String> lines) {
+		file.getParentFile().mkdirs();
+		try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+			lines.forEach(writer::println);
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to create file '" + file.getAbsolutePath() + "'.", e);
+		}
+	}
+
+	/**
+	 * Get the percentile with the nearest-rank method.
+	 * @param sorted sorted values.
+	 * @param percent percent.
+	 * @return percentile.
+	 */
+	static long percentile(List<Long> sorted, int percent) {
+		int rank = (int) Math.ceil(percent / 100.0 * sorted.size());
+		return sorted.get(Math.max(0, rank - 1));
+	}
+
+	static long median(List<Long> values) {
+		List<Long> sorted = new ArrayList<>(values);
+		Collections.sort(sorted);
+		return percentile(sorted, 50);
+	}
+
+	private static String format(long millis) {
+		return String.format("%.1fs", millis / 1000.0);
+	}
+}
@@ -0,0 +1,430 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.launcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import javax.management.ObjectName;
+
+/**
+ * Main class that launches the batch main class in the batch JVM.
+ *
+ * <p>
+ * The launcher starts a daemon thread that communicates with the Gradle process through files in the control directory.
+ * </p>
+ *
+ * <ul>
+ * <li>pid - The process id of the batch JVM. Used to destroy the JVM if it does not respond to the "exit" command.</li>
+ * <li>status - The process CPU time in nanoseconds. Updated periodically.</li>
+ * <li>command - Command from the Gradle process. "dump" appends a thread dump and heap summary to the dump file, "exit" terminates the JVM.</li>
+ * <li>dump.txt - Thread dumps and heap summaries.</li>
+ * </ul>
+ *
+ * <p>
+ * This class is executed on the batch classpath, so it must depend only on the JDK and must not have nested classes.
+ * </p>
+ *
+ * <pre>
+ * java BatchLauncher ${controlDirectory} ${mainClass} [args...]
+ * </pre>
+ *
+ * <p>
+ * If the main class is "--standby", the launcher waits for the launch file in the control directory, while loading the classes of the
+ * dependencies to warm up class loading. The launch file specifies the classpath entries to add, the system properties, the main class and the arguments.
+ * The classpath entries can be added only if {@link StandbyClassLoader} is the system class loader.
+ * </p>
+ *
+ * <p>
+ * While waiting, the standard input is read to detect the end of the Gradle process. The Gradle process keeps the standard input open until the handover,
+ * so if the standard input is closed without the launch file, or the launch file is not written within the standby timeout, the JVM exits.
+ * If the added classpath entries contain a class already loaded from the dependencies, the reason is written to the rejected file and the JVM exits
+ * with {@link #EXIT_CODE_REJECTED}, so that the Gradle process executes the batch in a new JVM.
+ * </p>
+ *
+ * <ul>
+ * <li>launch.properties - classpath.n, systemProperty.key.n, systemProperty.val.n, mainClass, args.n</li>
+ * <li>rejected - The reason why the launch is rejected.</li>
+ * </ul>
+ */
+public class BatchLauncher {
+	/** process id file name */
+	public static final String PID_FILE = "pid";
+	/** status file name */
+	public static final String STATUS_FILE = "status";
+	/** command file name */
+	public static final String COMMAND_FILE = "command";
+	/** dump file name */
+	public static final String DUMP_FILE = "dump.txt";
+	/** command: thread dump and heap summary */
+	public static final String COMMAND_DUMP = "dump";
+	/** command: terminate the JVM */
+	public static final String COMMAND_EXIT = "exit";
+	/** launch file name */
+	public static final String LAUNCH_FILE = "launch.properties";
+	/** rejected file name */
+	public static final String REJECTED_FILE = "rejected";
+	/** main class argument of the standby mode */
+	public static final String STANDBY = "--standby";
+	/** system property of the jar file name prefixes to warm up. comma-separated */
+	public static final String WARMUP_PROPERTY = "iplass.launcher.warmup";
+	/** system property of the standby timeout (ms) */
+	public static final String STANDBY_TIMEOUT_PROPERTY = "iplass.launcher.standbyTimeout";
+	/** exit code when terminated by the command */
+	public static final int EXIT_CODE_TERMINATED = 143;
+	/** exit code when the launch is rejected */
+	public static final int EXIT_CODE_REJECTED = 75;
+
+	/** polling interval (ms) */
+	private static final long POLLING_INTERVAL = 500L;
+	/** grace period for System.exit before halt (ms) */
+	private static final long EXIT_GRACE_PERIOD = 5000L;
+	/** max lines of class histogram */
+	private static final int HISTOGRAM_LINES = 30;
+	/** polling interval of the launch file (ms) */
+	private static final long STANDBY_POLLING_INTERVAL = 20L;
+	/** default standby timeout (ms) */
+	private static final long STANDBY_TIMEOUT = 30L * 60L * 1000L;
+	/** classes extracted to the batch classpath */
+	private static final Class<?>[] LAUNCHER_CLASSES = { BatchLauncher.class, StandbyClassLoader.class, IsolatedProperties.class,
+			IsolatedPrintStream.class, ExitGuard.class, ServiceConfigMatrix.class, MetaDataPathList.class, MetaDataVersionList.class };
+
+	/** true while waiting for the launch file */
+	private static volatile boolean standby;
+	/** true if the standard input is closed */
+	private static volatile boolean inputClosed;
+
+	/**
+	 * private constructor.
+	 */
+	private BatchLauncher() {
+	}
+
+	/**
+	 * launcher entry point.
+	 * @param args control directory, main class and arguments of the main class.
+	 * @throws Throwable exception thrown by the main class.
+	 */
+	public static void main(String[] args) throws Throwable {
+		File controlDirectory = new File(args[0]);
+		String mainClass = args[1];
+		String[] mainArgs = Arrays.copyOfRange(args, 2, args.length);
+
+		// "pid@hostname" on java 8 or later.
+		String name = ManagementFactory.getRuntimeMXBean().getName();
+		write(new File(controlDirectory, PID_FILE), name.substring(0, Math.max(0, name.indexOf('@'))), false);
+
+		Thread control = new Thread(() -> control(controlDirectory), "iplass-batch-control");
+		control.setDaemon(true);
+		control.start();
+
+		if (STANDBY.equals(mainClass)) {
+			Properties launch = awaitLaunch(controlDirectory);
+			mainClass = launch.getProperty("mainClass");
+			mainArgs = list(launch, "args.").toArray(new String[0]);
+		}
+
+		Method main = Class.forName(mainClass, true, Thread.currentThread().getContextClassLoader()).getMethod("main", String[].class);
+		try {
+			main.invoke(null, (Object) mainArgs);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Extract the launcher classes to the directory.
+	 *
+	 * <p>
+	 * Used by the Gradle process to put the launcher on the batch classpath.
+	 * </p>
+	 *
+	 * @param directory destination directory.
+	 */
+	public static synchronized void extract(File directory) {
+		for (Class<?> launcherClass : LAUNCHER_CLASSES) {
+			String resource = launcherClass.getName().replace('.', '/') + ".class";
+			File file = new File(directory, resource);
+			file.getParentFile().mkdirs();
+
+			try (InputStream input = launcherClass.getClassLoader().getResourceAsStream(resource)) {
+				Files.copy(input, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			} catch (IOException e) {
+				throw new RuntimeException("Unable to create file '" + file.getAbsolutePath() + "'.", e);
+			}
+		}
+	}
+
+	/**
+	 * Wait for the launch file while warming up class loading, and apply the classpath and system properties.
+	 * @param controlDirectory control directory.
+	 * @return launch properties.
+	 * @throws Exception exception while waiting.
+	 */
+	private static Properties awaitLaunch(File controlDirectory) throws Exception {
+		standby = true;
+		Thread warmup = new Thread(BatchLauncher::warmup, "iplass-batch-warmup");
+		warmup.setDaemon(true);
+		warmup.start();
+
+		Thread inputWatch = new Thread(BatchLauncher::awaitInputClosed, "iplass-batch-standby-input");
+		inputWatch.setDaemon(true);
+		inputWatch.start();
+
+		File file = new File(controlDirectory, LAUNCH_FILE);
+		long deadline = System.currentTimeMillis() + Long.getLong(STANDBY_TIMEOUT_PROPERTY, STANDBY_TIMEOUT);
+		while (!file.exists()) {
+			// the launch file is written before the standard input is closed.
+			if (inputClosed && !file.exists()) {
+				System.err.println("The Gradle process is no longer available. The standby batch JVM exits.");
+				exit();
+			}
+			if (System.currentTimeMillis() > deadline) {
+				System.err.println("The launch file '" + file.getAbsolutePath() + "' is not written within the standby timeout. The standby batch JVM exits.");
+				exit();
+			}
+			Thread.sleep(STANDBY_POLLING_INTERVAL);
+		}
+		standby = false;
+
+		Properties launch = new Properties();
+		try (InputStream input = Files.newInputStream(file.toPath())) {
+			launch.load(input);
+		}
+
+		List<String> entries = list(launch, "classpath.");
+		if (!entries.isEmpty()) {
+			ClassLoader loader = ClassLoader.getSystemClassLoader();
+			if (!(loader instanceof StandbyClassLoader)) {
+				throw new IllegalStateException("The classpath can not be added. The system class loader is " + loader.getClass().getName() + ".");
+			}
+
+			List<File> files = new ArrayList<>();
+			entries.forEach(e -> files.add(new File(e)));
+			List<String> shadowed = ((StandbyClassLoader) loader).addClasspath(files);
+			if (!shadowed.isEmpty()) {
+				write(new File(controlDirectory, REJECTED_FILE), "The classpath entries contain the classes already loaded from the dependencies. "
+						+ shadowed.subList(0, Math.min(shadowed.size(), 10)), false);
+				System.exit(EXIT_CODE_REJECTED);
+			}
+
+			// the added entries are searched before the dependencies. keep the launcher directory first.
+			String[] classpath = System.getProperty("java.class.path").split(File.pathSeparator, 2);
+			System.setProperty("java.class.path", classpath[0] + File.pathSeparator + String.join(File.pathSeparator, entries)
+					+ (classpath.length > 1 ? File.pathSeparator + classpath[1] : ""));
+		}
+
+		List<String> keys = list(launch, "systemProperty.key.");
+		List<String> values = list(launch, "systemProperty.val.");
+		for (int i = 0; i < keys.size(); i++) {
+			System.setProperty(keys.get(i), values.get(i));
+		}
+
+		return launch;
+	}
+
+	/**
+	 * Read the standard input until it is closed by the Gradle process.
+	 */
+	private static void awaitInputClosed() {
+		try {
+			byte[] buffer = new byte[256];
+			while (-1 != System.in.read(buffer)) {
+				// the Gradle process writes nothing.
+			}
+		} catch (IOException e) {
+			// treated as closed.
+		}
+		inputClosed = true;
+	}
+
+	/**
+	 * Load the classes of the dependency jars without initialization, until the launch file is found.
+	 */
+	private static void warmup() {
+		String[] prefixes = System.getProperty(WARMUP_PROPERTY, "iplass-").split(",");
+		ClassLoader loader = ClassLoader.getSystemClassLoader();
+
+		for (String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+			File file = new File(path);
+			if (!file.isFile() || !Arrays.stream(prefixes).anyMatch(p -> file.getName().startsWith(p.trim()))) {
+				continue;
+			}
+
+			try (JarFile jar = new JarFile(file)) {
+				Enumeration<JarEntry> entries = jar.entries();
+				while (standby && entries.hasMoreElements()) {
+					String name = entries.nextElement().getName();
+					if (!name.endsWith(".class") || name.contains("-")) {
+						// skip module-info and package-info.
+						continue;
+					}
+
+					try {
+						Class.forName(name.substring(0, name.length() - ".class".length()).replace('/', '.'), false, loader);
+					} catch (Throwable e) {
+						// optional dependencies may not exist.
+					}
+				}
+			} catch (IOException e) {
+				// not a jar file.
+			}
+
+			if (!standby) {
+				return;
+			}
+		}
+	}
+
+	private static List<String> list(Properties props, String baseKey) {
+		List<String> list = new ArrayList<>();
+		for (int i = 0; null != props.getProperty(baseKey + i); i++) {
+			list.add(props.getProperty(baseKey + i));
+		}
+		return list;
+	}
+
+	private static void control(File controlDirectory) {
+		File status = new File(controlDirectory, STATUS_FILE);
+		File command = new File(controlDirectory, COMMAND_FILE);
+		File dump = new File(controlDirectory, DUMP_FILE);
+
+		try {
+			while (true) {
+				write(status, String.valueOf(getProcessCpuTime()), false);
+
+				if (command.exists()) {
+					String value = new String(Files.readAllBytes(command.toPath()), StandardCharsets.UTF_8).trim();
+					if (COMMAND_DUMP.equals(value)) {
+						write(dump, dump(), true);
+					}
+					Files.delete(command.toPath());
+
+					if (COMMAND_EXIT.equals(value)) {
+						exit();
+						return;
+					}
+				}
+
+				Thread.sleep(POLLING_INTERVAL);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			// the control directory is no longer available. the batch continues without control.
+			System.err.println("The control directory '" + controlDirectory.getAbsolutePath()
+					+ "' is no longer available. The batch continues without the watchdog. " + e);
+		}
+	}
+
+	private static void exit() {
+		Thread halt = new Thread(() -> {
+			try {
+				Thread.sleep(EXIT_GRACE_PERIOD);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			// shutdown hooks did not complete.
+			Runtime.getRuntime().halt(EXIT_CODE_TERMINATED);
+		}, "iplass-batch-halt");
+		halt.setDaemon(true);
+		halt.start();
+
+		System.exit(EXIT_CODE_TERMINATED);
+	}
+
+	private static long getProcessCpuTime() {
+		java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+		if (os instanceof com.sun.management.OperatingSystemMXBean) {
+			return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+		}
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		long total = 0;
+		for (long id : threads.getAllThreadIds()) {
+			total += Math.max(0, threads.getThreadCpuTime(id));
+		}
+		return total;
+	}
+
+	private static String dump() {
+		StringBuilder dump = new StringBuilder();
+		dump.append("==== ").append(ZonedDateTime.now()).append(" ====\n");
+
+		// thread dump. use the diagnostic command if available, it is the same as jstack.
+		String threadPrint = diagnosticCommand("threadPrint");
+		if (null != threadPrint) {
+			dump.append(threadPrint);
+		} else {
+			for (ThreadInfo info : ManagementFactory.getThreadMXBean().dumpAllThreads(true, true)) {
+				dump.append(info);
+			}
+		}
+
+		// heap summary.
+		dump.append("\nheap: ").append(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage()).append('\n');
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			dump.append("  ").append(pool.getName()).append(": ").append(pool.getUsage()).append('\n');
+		}
+		String histogram = diagnosticCommand("gcClassHistogram");
+		if (null != histogram) {
+			String[] lines = histogram.split("\n");
+			dump.append(String.join("\n", Arrays.copyOf(lines, Math.min(lines.length, HISTOGRAM_LINES)))).append('\n');
+		}
+
+		return dump.append('\n').toString();
+	}
+
+	private static String diagnosticCommand(String operation) {
+		try {
+			return (String) ManagementFactory.getPlatformMBeanServer().invoke(new ObjectName("com.sun.management:type=DiagnosticCommand"),
+					operation, new Object[] { null }, new String[] { String[].class.getName() });
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	private static void write(File file, String value, boolean append) throws IOException {
+		if (append) {
+			Files.write(file.toPath(), value.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+			return;
+		}
+
+		// replace atomically so that the Gradle process does not read a partially written file.
+		File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+		Files.write(temp.toPath(), value.getBytes(StandardCharsets.UTF_8));
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -0,0 +1,413 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.launcher;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logger;
+import org.gradle.process.JavaExecSpec;
+
+/**
+ * Watchdog of the batch JVM.
+ *
+ * <p>
+ * The batch is launched through {@link BatchLauncher}, and the watchdog monitors the wall-clock time and the activity of the batch JVM.
+ * The batch is regarded as active while it writes output or its CPU time increases.
+ * When a timeout is reached, thread dumps and heap summaries are taken several times at intervals, the batch JVM is terminated,
+ * and a diagnostic report is written.
+ * </p>
+ *
+ * <p>
+ * The batch JVM is terminated with the exit command first. If it does not terminate within the grace period
+ * (e.g. the JVM does not respond or the shutdown hooks hang), the process is destroyed forcibly with the process id written by the launcher,
+ * so that the JVM does not keep running and holding the database locks.
+ * </p>
+ */
+public class BatchWatchdog {
+	/** polling interval (ms) */
+	private static final long POLLING_INTERVAL = 1000L;
+	/** CPU time per polling interval regarded as progress (ns) */
+	private static final long CPU_PROGRESS_THRESHOLD = 10_000_000L;
+	/** time to wait for the batch JVM to process a command (ms) */
+	private static final long COMMAND_TIMEOUT = 30000L;
+	/** time to wait for the batch JVM to terminate after the exit command, and after the destruction (ms) */
+	private static final long TERMINATION_GRACE_PERIOD = 10000L;
+
+	/** watchdog name */
+	private final String name;
+	/** control directory */
+	private final File controlDirectory;
+	/** directory to extract the launcher class */
+	private final File launcherDirectory;
+	/** directory to write the report */
+	private final File reportDirectory;
+	/** wall-clock timeout. null if not set */
+	private final Duration timeout;
+	/** inactivity timeout. null if not set */
+	private final Duration inactivityTimeout;
+	/** number of thread dumps */
+	private final int dumpCount;
+	/** interval of thread dumps */
+	private final Duration dumpInterval;
+	/** logger */
+	private final Logger logger;
+
+	/** last output time (ms) */
+	private volatile long lastOutput;
+
+	/**
+	 * constructor
+	 * @param name watchdog name. used for the report file name.
+	 * @param controlDirectory control directory. must be unique for each batch execution.
+	 * @param launcherDirectory directory to extract the launcher class.
+	 * @param reportDirectory directory to write the report.
+	 * @param timeout wall-clock timeout. null if not set.
+	 * @param inactivityTimeout inactivity timeout. null if not set.
+	 * @param dumpCount number of thread dumps.
+	 * @param dumpInterval interval of thread dumps.
+	 * @param logger logger.
+	 */
+	public BatchWatchdog(String name, File controlDirectory, File launcherDirectory, File reportDirectory, Duration timeout,
+			Duration inactivityTimeout, int dumpCount, Duration dumpInterval, Logger logger) {
+		this.name = name;
+		this.controlDirectory = controlDirectory;
+		this.launcherDirectory = launcherDirectory;
+		this.reportDirectory = reportDirectory;
+		this.timeout = timeout;
+		this.inactivityTimeout = inactivityTimeout;
+		this.dumpCount = dumpCount;
+		this.dumpInterval = dumpInterval;
+		this.logger = logger;
+	}
+
+	/**
+	 * Configure the batch to be launched through {@link BatchLauncher}.
+	 *
+	 * <p>
+	 * Call after the main class, arguments and standard output are configured.
+	 * </p>
+	 *
+	 * @param spec JavaExecSpec
+	 */
+	public void configure(JavaExecSpec spec) {
+		controlDirectory.mkdirs();
+		BatchLauncher.extract(launcherDirectory);
+		spec.classpath(launcherDirectory);
+
+		List<String> args = new ArrayList<>();
+		args.add(controlDirectory.getAbsolutePath());
+		args.add(spec.getMainClass().get());
+		args.addAll(spec.getArgs());
+		spec.getMainClass().set(BatchLauncher.class.getName());
+		spec.setArgs(args);
+
+		spec.setStandardOutput(new ActivityOutputStream(spec.getStandardOutput()));
+		spec.setErrorOutput(new ActivityOutputStream(spec.getErrorOutput()));
+	}
+
+	/**
+	 * Execute the batch and monitor it.
+	 *
+	 * <p>
+	 * If a timeout is reached or the current thread is interrupted, the batch JVM is terminated and an exception is thrown.
+	 * </p>
+	 *
+	 * @param execution batch execution. {@link #configure(JavaExecSpec)} must be applied.
+	 */
+	public void run(Runnable execution) {
+		ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "iplass-batch-" + name));
+		try {
+			long start = System.currentTimeMillis();
+			lastOutput = start;
+			long lastCpuTime = -1;
+			long lastCpuProgress = start;
+
+			Future<?> future = executor.submit(execution);
+			while (true) {
+				try {
+					future.get(POLLING_INTERVAL, TimeUnit.MILLISECONDS);
+					return;
+
+				} catch (TimeoutException e) {
+					// still running.
+
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof RuntimeException) {
+						throw (RuntimeException) e.getCause();
+					}
+					throw new GradleException("Failed to execute the batch.", e.getCause());
+
+				} catch (InterruptedException e) {
+					// build cancellation or task timeout.
+					terminate(future);
+					Thread.currentThread().interrupt();
+					throw new GradleException("The batch is interrupted. The batch JVM is terminated.", e);
+				}
+
+				long now = System.currentTimeMillis();
+				long cpuTime = readCpuTime();
+				// background JVM threads (JIT, GC) consume a little CPU time even while the batch is blocked.
+				if (0 <= lastCpuTime && cpuTime - lastCpuTime >= CPU_PROGRESS_THRESHOLD) {
+					lastCpuProgress = now;
+				}
+				lastCpuTime = cpuTime;
+
+				String reason = null;
+				if (null != timeout && now - start > timeout.toMillis()) {
+					reason = "The batch did not complete within the timeout " + timeout + ".";
+				} else if (null != inactivityTimeout && now - Math.max(lastOutput, lastCpuProgress) > inactivityTimeout.toMillis()) {
+					reason = "The batch made no output and no CPU progress within the inactivity timeout " + inactivityTimeout + ".";
+				}
+
+				if (null != reason) {
+					File report = diagnose(reason);
+					terminate(future);
+					throw new GradleException(reason + " The batch JVM is terminated. See the diagnostic report '" + report.getAbsolutePath() + "'.");
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Take thread dumps and heap summaries, and write the diagnostic report.
+	 * @param reason timeout reason.
+	 * @return report file.
+	 */
+	private File diagnose(String reason) {
+		logger.warn("{} Taking {} thread dumps.", reason, dumpCount);
+		for (int i = 0; i < dumpCount; i++) {
+			if (0 < i) {
+				sleep(dumpInterval.toMillis());
+			}
+			sendCommand(BatchLauncher.COMMAND_DUMP, true);
+		}
+
+		File dump = new File(controlDirectory, BatchLauncher.DUMP_FILE);
+		File report = new File(reportDirectory, name + "_" + ZonedDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss")) + ".txt");
+		reportDirectory.mkdirs();
+
+		StringBuilder header = new StringBuilder();
+		header.append("task: ").append(name).append('\n');
+		header.append("reason: ").append(reason).append('\n');
+		header.append("timeout: ").append(timeout).append('\n');
+		header.append("inactivityTimeout: ").append(inactivityTimeout).append('\n');
+		header.append('\n');
+		try {
+			Files.write(report.toPath(), header.toString().getBytes(StandardCharsets.UTF_8));
+			if (dump.exists()) {
+				Files.write(report.toPath(), Files.readAllBytes(dump.toPath()), StandardOpenOption.APPEND);
+			} else {
+				Files.write(report.toPath(), "The batch JVM did not respond to the dump request.\n".getBytes(StandardCharsets.UTF_8),
+						StandardOpenOption.APPEND);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to create file '" + report.getAbsolutePath() + "'.", e);
+		}
+		return report;
+	}
+
+	/**
+	 * Send a command to the batch JVM.
+	 * @param command command.
+	 * @param await if true, wait until the command is processed.
+	 */
+	private void sendCommand(String command, boolean await) {
+		File file = new File(controlDirectory, BatchLauncher.COMMAND_FILE);
+		File temp = new File(controlDirectory, BatchLauncher.COMMAND_FILE + ".tmp");
+		try {
+			Files.write(temp.toPath(), command.getBytes(StandardCharsets.UTF_8));
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed during file operation.", e);
+		}
+
+		if (!await) {
+			return;
+		}
+
+		long limit = System.currentTimeMillis() + COMMAND_TIMEOUT;
+		while (file.exists() && System.currentTimeMillis() < limit) {
+			sleep(100L);
+		}
+		if (file.exists()) {
+			logger.warn("The batch JVM did not respond to the command \"{}\".", command);
+		}
+	}
+
+	/**
+	 * Terminate the batch JVM with the exit command, and destroy the process forcibly if it does not terminate within the grace period.
+	 * @param future batch execution.
+	 */
+	private void terminate(Future<?> future) {
+		sendCommand(BatchLauncher.COMMAND_EXIT, false);
+		if (awaitTermination(future)) {
+			return;
+		}
+
+		logger.warn("The batch JVM did not terminate within {} ms. The process is destroyed forcibly.", TERMINATION_GRACE_PERIOD);
+		destroyForcibly();
+		if (!awaitTermination(future)) {
+			logger.warn("The batch JVM did not terminate.");
+		}
+	}
+
+	/**
+	 * Wait for the batch execution to complete within the grace period.
+	 *
+	 * <p>
+	 * The interrupted status of the current thread is cleared while waiting, and restored.
+	 * </p>
+	 *
+	 * @param future batch execution.
+	 * @return true if completed.
+	 */
+	private boolean awaitTermination(Future<?> future) {
+		boolean interrupted = Thread.interrupted();
+		try {
+			future.get(TERMINATION_GRACE_PERIOD, TimeUnit.MILLISECONDS);
+			return true;
+
+		} catch (ExecutionException e) {
+			// terminated abnormally, as expected.
+			return true;
+
+		} catch (InterruptedException e) {
+			interrupted = true;
+			return future.isDone();
+
+		} catch (TimeoutException e) {
+			return false;
+
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Destroy the batch JVM forcibly with the process id written by the launcher.
+	 */
+	private void destroyForcibly() {
+		String pid;
+		try {
+			pid = new String(Files.readAllBytes(new File(controlDirectory, BatchLauncher.PID_FILE).toPath()), StandardCharsets.UTF_8).trim();
+			Long.parseLong(pid);
+		} catch (IOException | NumberFormatException e) {
+			logger.warn("The process id of the batch JVM is unknown. {}", e.toString());
+			return;
+		}
+
+		try {
+			// ProcessHandle is available on java 9 or later.
+			Class<?> handleClass = Class.forName("java.lang.ProcessHandle");
+			Optional<?> handle = (Optional<?>) handleClass.getMethod("of", long.class).invoke(null, Long.parseLong(pid));
+			if (handle.isPresent()) {
+				handleClass.getMethod("destroyForcibly").invoke(handle.get());
+			}
+			return;
+
+		} catch (ClassNotFoundException e) {
+			// java 8. use the command of the OS.
+
+		} catch (ReflectiveOperationException e) {
+			logger.warn("Unable to destroy the batch JVM (pid {}). {}", pid, e.toString());
+			return;
+		}
+
+		List<String> command = System.getProperty("os.name", "").toLowerCase().startsWith("windows")
+				? Arrays.asList("taskkill", "/F", "/PID", pid)
+				: Arrays.asList("kill", "-9", pid);
+		try {
+			Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+			process.getInputStream().close();
+			process.waitFor(COMMAND_TIMEOUT, TimeUnit.MILLISECONDS);
+		} catch (IOException e) {
+			logger.warn("Unable to destroy the batch JVM (pid {}). {}", pid, e.toString());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private long readCpuTime() {
+		File status = new File(controlDirectory, BatchLauncher.STATUS_FILE);
+		if (!status.exists()) {
+			return -1;
+		}
+
+		try {
+			return Long.parseLong(new String(Files.readAllBytes(status.toPath()), StandardCharsets.UTF_8).trim());
+		} catch (IOException | NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Output stream that records the last output time.
+	 */
+	private class ActivityOutputStream extends FilterOutputStream {
+		/**
+		 * constructor
+		 * @param out output stream.
+		 */
+		ActivityOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			lastOutput = System.currentTimeMillis();
+			out.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			lastOutput = System.currentTimeMillis();
+			out.write(b, off, len);
+		}
+	}
+}
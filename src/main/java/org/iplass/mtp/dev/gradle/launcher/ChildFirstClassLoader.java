@@ -0,0 +1,89 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.launcher;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class loader that searches its own classpath before the parent.
+ *
+ * <p>
+ * Used to execute a batch in a Gradle worker daemon. The classes of the JDK (and the XML APIs provided by the JDK) are loaded from the parent first,
+ * and the other classes are loaded from the batch classpath first, so the classes of Gradle and the plugin do not conflict with the batch.
+ * </p>
+ */
+public class ChildFirstClassLoader extends URLClassLoader {
+	static {
+		ClassLoader.registerAsParallelCapable();
+	}
+
+	/** package prefixes loaded from the parent first */
+	private static final List<String> PARENT_FIRST_PACKAGES = Arrays.asList("java.", "javax.", "jdk.", "sun.", "com.sun.", "org.w3c.", "org.xml.");
+
+	/**
+	 * constructor
+	 * @param classpath classpath of the batch.
+	 * @param parent parent class loader.
+	 */
+	public ChildFirstClassLoader(List<File> classpath, ClassLoader parent) {
+		super(toUrls(classpath), parent);
+	}
+
+	@Override
+	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+		if (PARENT_FIRST_PACKAGES.stream().anyMatch(name::startsWith)) {
+			return super.loadClass(name, resolve);
+		}
+
+		synchronized (getClassLoadingLock(name)) {
+			Class<?> loaded = findLoadedClass(name);
+			if (null == loaded) {
+				try {
+					loaded = findClass(name);
+				} catch (ClassNotFoundException e) {
+					return super.loadClass(name, resolve);
+				}
+			}
+			if (resolve) {
+				resolveClass(loaded);
+			}
+			return loaded;
+		}
+	}
+
+	@Override
+	public URL getResource(String name) {
+		URL resource = findResource(name);
+		return null != resource ? resource : super.getResource(name);
+	}
+
+	private static URL[] toUrls(List<File> classpath) {
+		URL[] urls = new URL[classpath.size()];
+		for (int i = 0; i < urls.length; i++) {
+			try {
+				urls[i] = classpath.get(i).toURI().toURL();
+			} catch (MalformedURLException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+		return urls;
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.launcher;
+
+import java.security.Permission;
+
+/**
+ * Security manager that prevents isolated executions from exiting the JVM.
+ *
+ * <p>
+ * If System.exit is called by a thread bound to an execution (see {@link IsolatedProperties#bind(java.util.Map)}),
+ * a SecurityException whose message starts with {@link #EXIT_PREFIX} and the status is thrown instead.
+ * No other permission is checked.
+ * </p>
+ *
+ * <p>
+ * It is installed only in a batch JVM (e.g. {@link ServiceConfigMatrix}) or a Gradle worker daemon ({@link InProcessAction}), never in the Gradle process.
+ * This class is executed on the batch classpath, so it must depend only on the JDK and must not have nested classes.
+ * </p>
+ */
+@SuppressWarnings("removal")
+public class ExitGuard extends SecurityManager {
+	/** message prefix of the exception thrown on exit */
+	public static final String EXIT_PREFIX = "exit:";
+
+	/**
+	 * Install as the security manager.
+	 * @return true if installed. false if the JVM does not allow the security manager.
+	 */
+	public static synchronized boolean install() {
+		if (System.getSecurityManager() instanceof ExitGuard) {
+			return true;
+		}
+
+		try {
+			System.setSecurityManager(new ExitGuard());
+			return true;
+		} catch (UnsupportedOperationException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Get the exit status from the exception thrown on exit.
+	 * @param e exception.
+	 * @return exit status. null if the exception is not thrown on exit.
+	 */
+	public static Integer getExitStatus(Throwable e) {
+		if (e instanceof SecurityException && null != e.getMessage() && e.getMessage().startsWith(EXIT_PREFIX)) {
+			return Integer.valueOf(e.getMessage().substring(EXIT_PREFIX.length()));
+		}
+		return null;
+	}
+
+	@Override
+	public void checkExit(int status) {
+		if (IsolatedProperties.isBound()) {
+			throw new SecurityException(EXIT_PREFIX + status);
+		}
+	}
+
+	@Override
+	public void checkPermission(Permission perm) {
+	}
+
+	@Override
+	public void checkPermission(Permission perm, Object context) {
+	}
+}
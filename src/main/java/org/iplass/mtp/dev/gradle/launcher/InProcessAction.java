@@ -0,0 +1,226 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.launcher;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+/**
+ * Work action that executes the main class of a batch in a Gradle worker daemon.
+ *
+ * <p>
+ * The action is submitted with the process isolation of the Worker API. The worker daemon is started with the plugin classpath and the system properties
+ * of the batch (e.g. mtp.config and batch.language), and Gradle reuses it for the next executions and builds while they are the same.
+ * The batch is executed with a {@link ChildFirstClassLoader} of the batch classpath. The class loaders are cached by the fingerprint of the content
+ * of the classpath (including the files of the classpath directories) and the files referred by the system properties,
+ * so the static state initialized by a batch (e.g. the service-config of iPLAss) is reused only while they are unchanged,
+ * and a new class loader is created when they change. The cache lives as long as Gradle keeps the class loader of this action (the executions of a build).
+ * </p>
+ *
+ * <p>
+ * A worker daemon executes one action at a time, so System.out and System.err are redirected to the output files of the execution,
+ * and restored after the execution. System.exit of the batch is prevented with {@link ExitGuard}, and the exit status is the result of the execution.
+ * The security manager is required, so the action is not used on Java 24 or later.
+ * </p>
+ */
+public abstract class InProcessAction implements WorkAction<InProcessAction.Params> {
+	/** number of cached class loaders */
+	private static final int CACHE_SIZE = 3;
+	/** hash algorithm of the fingerprint */
+	private static final String HASH_ALGORITHM = "SHA-256";
+
+	/** logger */
+	private static final Logger LOGGER = Logging.getLogger(InProcessAction.class);
+
+	/** fingerprint, class loader. in access order */
+	private static final Map<String, ChildFirstClassLoader> CLASS_LOADERS = new LinkedHashMap<>(16, 0.75f, true);
+
+	@Override
+	public void execute() {
+		String mainClass = getParameters().getMainClass().get();
+		File outputFile = getParameters().getOutputFile().get().getAsFile();
+		File errorFile = getParameters().getErrorFile().get().getAsFile();
+		if (!ExitGuard.install()) {
+			throw new RuntimeException("System.exit of " + mainClass + " cannot be prevented in the worker daemon. Set inProcess = false.");
+		}
+
+		PrintStream out = System.out;
+		PrintStream err = System.err;
+		ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+		try (PrintStream output = new PrintStream(new FileOutputStream(outputFile), true);
+				PrintStream error = new PrintStream(new FileOutputStream(errorFile), true)) {
+			System.setOut(output);
+			System.setErr(error);
+
+			ClassLoader loader = getClassLoader(new ArrayList<>(getParameters().getClasspath().getFiles()), getParameters().getSystemProperties().get());
+			Thread.currentThread().setContextClassLoader(loader);
+			// ExitGuard prevents System.exit of the bound threads. the system properties of the batch are the system properties of the worker daemon.
+			IsolatedProperties.bind(Collections.emptyMap());
+			Class.forName(mainClass, true, loader).getMethod("main", String[].class)
+					.invoke(null, (Object) getParameters().getArgs().get().toArray(new String[0]));
+
+		} catch (InvocationTargetException e) {
+			Integer status = ExitGuard.getExitStatus(e.getCause());
+			if (null == status) {
+				throw new RuntimeException(mainClass + " failed.", e.getCause());
+			}
+			if (0 != status) {
+				throw new RuntimeException(mainClass + " exited with status " + status + ".");
+			}
+		} catch (ReflectiveOperationException | LinkageError e) {
+			throw new RuntimeException("Unable to execute " + mainClass + ".", e);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed during file operation.", e);
+		} finally {
+			IsolatedProperties.unbind();
+			System.setOut(out);
+			System.setErr(err);
+			Thread.currentThread().setContextClassLoader(contextClassLoader);
+		}
+	}
+
+	/**
+	 * Get the class loader of the classpath, or create it if the content has changed.
+	 * @param classpath classpath of the batch.
+	 * @param systemProperties system properties of the batch.
+	 * @return class loader.
+	 */
+	private static synchronized ChildFirstClassLoader getClassLoader(List<File> classpath, Map<String, String> systemProperties) {
+		String fingerprint = fingerprint(classpath, systemProperties);
+		ChildFirstClassLoader loader = CLASS_LOADERS.get(fingerprint);
+		if (null != loader) {
+			LOGGER.info("The class loader {} is reused.", fingerprint);
+			return loader;
+		}
+
+		loader = new ChildFirstClassLoader(classpath, ClassLoader.getSystemClassLoader().getParent());
+		CLASS_LOADERS.put(fingerprint, loader);
+		LOGGER.info("The class loader {} is created.", fingerprint);
+
+		// the worker daemon executes one action at a time, so the evicted class loader is not used.
+		Iterator<ChildFirstClassLoader> iterator = CLASS_LOADERS.values().iterator();
+		while (CACHE_SIZE < CLASS_LOADERS.size()) {
+			try {
+				iterator.next().close();
+			} catch (IOException e) {
+				LOGGER.info("Unable to close the class loader. {}", e.getMessage());
+			}
+			iterator.remove();
+		}
+		return loader;
+	}
+
+	private static String fingerprint(List<File> classpath, Map<String, String> systemProperties) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+			for (File entry : classpath) {
+				update(digest, entry.getAbsolutePath(), entry);
+				if (entry.isDirectory()) {
+					Path root = entry.toPath();
+					List<Path> files;
+					try (Stream<Path> stream = Files.walk(root)) {
+						files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+					}
+					for (Path file : files) {
+						update(digest, root.relativize(file).toString(), file.toFile());
+					}
+				}
+			}
+
+			for (Map.Entry<String, String> property : new TreeMap<>(systemProperties).entrySet()) {
+				update(digest, property.getKey() + "=" + property.getValue(), new File(property.getValue()));
+			}
+
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest.digest()) {
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("Hash algorithm " + HASH_ALGORITHM + " is not available.", e);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed during file operation.", e);
+		}
+	}
+
+	private static void update(MessageDigest digest, String key, File file) {
+		String stat = file.isFile() ? "\t" + file.length() + "\t" + file.lastModified() : "";
+		digest.update((key + stat + "\n").getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Parameters of the action.
+	 */
+	public interface Params extends WorkParameters {
+		/**
+		 * @return classpath of the batch.
+		 */
+		ConfigurableFileCollection getClasspath();
+
+		/**
+		 * @return system properties of the batch. Used to detect the change of the files referred by them.
+		 */
+		MapProperty<String, String> getSystemProperties();
+
+		/**
+		 * @return main class.
+		 */
+		Property<String> getMainClass();
+
+		/**
+		 * @return arguments of the main class.
+		 */
+		ListProperty<String> getArgs();
+
+		/**
+		 * @return file of System.out.
+		 */
+		RegularFileProperty getOutputFile();
+
+		/**
+		 * @return file of System.err.
+		 */
+		RegularFileProperty getErrorFile();
+	}
+}
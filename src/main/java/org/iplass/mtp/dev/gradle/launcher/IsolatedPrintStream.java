@@ -0,0 +1,94 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.launcher;
+
+import java.io.PrintStream;
+
+/**
+ * Standard output isolated per execution.
+ *
+ * <p>
+ * Installed as System.out and System.err. While an execution is bound to the current thread (and the threads created by it),
+ * the output is written to the stream of the execution. The other threads write to the original stream.
+ * </p>
+ *
+ * <p>
+ * This class is executed on the batch classpath, so it must depend only on the JDK and must not have nested classes.
+ * </p>
+ */
+public class IsolatedPrintStream extends PrintStream {
+	/** stream of the execution bound to the thread */
+	private static final InheritableThreadLocal<PrintStream> BOUND = new InheritableThreadLocal<>();
+
+	/** original stream */
+	private final PrintStream original;
+
+	/**
+	 * constructor
+	 * @param original original stream.
+	 */
+	public IsolatedPrintStream(PrintStream original) {
+		super(original, true);
+		this.original = original;
+	}
+
+	/**
+	 * Install as System.out and System.err, if not installed.
+	 */
+	public static synchronized void install() {
+		if (!(System.out instanceof IsolatedPrintStream)) {
+			System.setOut(new IsolatedPrintStream(System.out));
+		}
+		if (!(System.err instanceof IsolatedPrintStream)) {
+			System.setErr(new IsolatedPrintStream(System.err));
+		}
+	}
+
+	/**
+	 * Bind the stream of the execution to the current thread.
+	 * @param stream stream of the execution.
+	 */
+	public static void bind(PrintStream stream) {
+		BOUND.set(stream);
+	}
+
+	/**
+	 * Unbind the stream of the execution from the current thread.
+	 */
+	public static void unbind() {
+		BOUND.remove();
+	}
+
+	@Override
+	public void write(int b) {
+		target().write(b);
+	}
+
+	@Override
+	public void write(byte[] buf, int off, int len) {
+		target().write(buf, off, len);
+	}
+
+	@Override
+	public void flush() {
+		target().flush();
+	}
+
+	private PrintStream target() {
+		PrintStream bound = BOUND.get();
+		return null != bound ? bound : original;
+	}
+}
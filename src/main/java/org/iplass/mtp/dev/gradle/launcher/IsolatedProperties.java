@@ -0,0 +1,107 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.launcher;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * System properties isolated per execution.
+ *
+ * <p>
+ * Installed as the system properties. While an execution is bound to the current thread (and the threads created by it),
+ * the properties of the execution take precedence, and the properties set by the execution are kept in the execution.
+ * The other threads see the original system properties.
+ * </p>
+ *
+ * <p>
+ * This class is executed on the batch classpath, so it must depend only on the JDK and must not have nested classes.
+ * </p>
+ */
+public class IsolatedProperties extends Properties {
+	private static final long serialVersionUID = 1L;
+
+	/** properties of the execution bound to the thread */
+	private static final InheritableThreadLocal<Map<String, String>> BOUND = new InheritableThreadLocal<>();
+
+	/**
+	 * constructor
+	 * @param properties original system properties.
+	 */
+	public IsolatedProperties(Properties properties) {
+		super();
+		properties.stringPropertyNames().forEach(k -> super.setProperty(k, properties.getProperty(k)));
+	}
+
+	/**
+	 * Install as the system properties, if not installed.
+	 */
+	public static synchronized void install() {
+		if (!(System.getProperties() instanceof IsolatedProperties)) {
+			System.setProperties(new IsolatedProperties(System.getProperties()));
+		}
+	}
+
+	/**
+	 * Bind the properties of the execution to the current thread.
+	 * @param properties properties of the execution.
+	 */
+	public static void bind(Map<String, String> properties) {
+		BOUND.set(new ConcurrentHashMap<>(properties));
+	}
+
+	/**
+	 * Unbind the properties of the execution from the current thread.
+	 */
+	public static void unbind() {
+		BOUND.remove();
+	}
+
+	/**
+	 * @return true if an execution is bound to the current thread.
+	 */
+	public static boolean isBound() {
+		return null != BOUND.get();
+	}
+
+	@Override
+	public String getProperty(String key) {
+		Map<String, String> bound = BOUND.get();
+		if (null != bound && bound.containsKey(key)) {
+			return bound.get(key);
+		}
+		return super.getProperty(key);
+	}
+
+	@Override
+	public synchronized Object get(Object key) {
+		Map<String, String> bound = BOUND.get();
+		if (null != bound && bound.containsKey(key)) {
+			return bound.get(key);
+		}
+		return super.get(key);
+	}
+
+	@Override
+	public synchronized Object setProperty(String key, String value) {
+		Map<String, String> bound = BOUND.get();
+		if (null != bound) {
+			return bound.put(key, value);
+		}
+		return super.setProperty(key, value);
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.launcher;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes the metadata paths of a tenant to a file.
+ *
+ * <p>
+ * The paths are listed with the metadata context of iPLAss in the tenant, so the metadata stored in the database is listed without exporting it.
+ * iPLAss is called by reflection, and an error is reported if the API of the iPLAss version is different.
+ * </p>
+ *
+ * <pre>
+ * java MetaDataPathList ${tenantId} ${prefix} ${outputFile}
+ * </pre>
+ *
+ * <p>
+ * The output file contains a path per line in ascending order. The exit status is 0 if listed, otherwise 1.
+ * </p>
+ *
+ * <p>
+ * This class is executed on the batch classpath, so it must depend only on the JDK and must not have nested classes.
+ * </p>
+ */
+public class MetaDataPathList {
+
+	/**
+	 * private constructor.
+	 */
+	private MetaDataPathList() {
+	}
+
+	/**
+	 * entry point.
+	 * @param args tenant id, path prefix and output file.
+	 */
+	public static void main(String[] args) {
+		int status = 0;
+		try {
+			List<String> paths = list(Integer.parseInt(args[0]), args[1]);
+			Files.write(new File(args[2]).toPath(), paths, StandardCharsets.UTF_8);
+
+		} catch (Throwable e) {
+			Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+			System.err.println("Unable to list the metadata paths of '" + args[1] + "'. " + cause);
+			cause.printStackTrace();
+			status = 1;
+		}
+
+		// terminate the threads started by iPLAss.
+		System.exit(status);
+	}
+
+	/**
+	 * List the metadata paths in the tenant.
+	 * @param tenantId tenant id.
+	 * @param prefix path prefix. e.g. "/entity/"
+	 * @return sorted metadata paths.
+	 * @throws Exception if iPLAss fails or the API is not found.
+	 */
+	private static List<String> list(int tenantId, String prefix) throws Exception {
+		Object result = invokeMetaDataContext(tenantId, "pathList", prefix);
+		List<String> paths = new ArrayList<>();
+		if (null != result) {
+			for (Object path : (Collection<?>) result) {
+				paths.add(String.valueOf(path));
+			}
+		}
+		Collections.sort(paths);
+		return paths;
+	}
+
+	/**
+	 * Invoke a method of the metadata context in the tenant.
+	 * @param tenantId tenant id.
+	 * @param methodName method name of MetaDataContext that takes the path prefix. e.g. "pathList"
+	 * @param prefix path prefix. e.g. "/entity/"
+	 * @return return value of the method.
+	 * @throws Exception if iPLAss fails or the API is not found.
+	 */
+	static Object invokeMetaDataContext(int tenantId, String methodName, String prefix) throws Exception {
+		ClassLoader loader = Thread.currentThread().getContextClassLoader();
+		Class<?> registryClass = Class.forName("org.iplass.mtp.spi.ServiceRegistry", true, loader);
+		Object registry = registryClass.getMethod("getRegistry").invoke(null);
+		Class<?> tenantServiceClass = Class.forName("org.iplass.mtp.impl.core.TenantContextService", true, loader);
+		Object tenantService = registryClass.getMethod("getService", Class.class).invoke(registry, tenantServiceClass);
+		Object tenantContext = tenantServiceClass.getMethod("getTenantContext", int.class).invoke(tenantService, tenantId);
+		if (null == tenantContext) {
+			throw new IllegalArgumentException("Tenant " + tenantId + " is not found.");
+		}
+
+		// ExecuteContext.executeAs(TenantContext, Executable) with a proxy of the functional interface.
+		Class<?> contextClass = Class.forName("org.iplass.mtp.impl.core.ExecuteContext", true, loader);
+		Method executeAs = null;
+		for (Method method : contextClass.getMethods()) {
+			Class<?>[] types = method.getParameterTypes();
+			if ("executeAs".equals(method.getName()) && 2 == types.length && types[0].isInstance(tenantContext) && types[1].isInterface()) {
+				executeAs = method;
+			}
+		}
+		if (null == executeAs) {
+			throw new NoSuchMethodException(contextClass.getName() + ".executeAs");
+		}
+
+		Class<?> executable = executeAs.getParameterTypes()[1];
+		Object action = Proxy.newProxyInstance(loader, new Class<?>[] { executable }, (proxy, method, methodArgs) -> {
+			if (Object.class == method.getDeclaringClass()) {
+				return "equals".equals(method.getName()) ? proxy == methodArgs[0] : method.invoke(executable, methodArgs);
+			}
+
+			Class<?> metaDataClass = Class.forName("org.iplass.mtp.impl.metadata.MetaDataContext", true, loader);
+			Object metaDataContext = metaDataClass.getMethod("getContext").invoke(null);
+			return metaDataClass.getMethod(methodName, String.class).invoke(metaDataContext, prefix);
+		});
+
+		return executeAs.invoke(null, tenantContext, action);
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.launcher;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes the metadata paths and versions of a tenant to a file.
+ *
+ * <p>
+ * The definitions are listed with the metadata context of iPLAss in the tenant (same as {@link MetaDataPathList}),
+ * so the versions of the metadata stored in the database are listed without exporting the metadata.
+ * iPLAss is called by reflection, and an error is reported if the API of the iPLAss version is different.
+ * </p>
+ *
+ * <pre>
+ * java MetaDataVersionList ${tenantId} ${prefix} ${outputFile}
+ * </pre>
+ *
+ * <p>
+ * The output file contains a path and its version separated by a tab per line in ascending order of the path.
+ * The exit status is 0 if listed, otherwise 1.
+ * </p>
+ *
+ * <p>
+ * This class is executed on the batch classpath, so it must depend only on the JDK and must not have nested classes.
+ * </p>
+ */
+public class MetaDataVersionList {
+
+	/**
+	 * private constructor.
+	 */
+	private MetaDataVersionList() {
+	}
+
+	/**
+	 * entry point.
+	 * @param args tenant id, path prefix and output file.
+	 */
+	public static void main(String[] args) {
+		int status = 0;
+		try {
+			List<String> lines = list(Integer.parseInt(args[0]), args[1]);
+			Files.write(new File(args[2]).toPath(), lines, StandardCharsets.UTF_8);
+
+		} catch (Throwable e) {
+			Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+			System.err.println("Unable to list the metadata versions of '" + args[1] + "'. " + cause);
+			cause.printStackTrace();
+			status = 1;
+		}
+
+		// terminate the threads started by iPLAss.
+		System.exit(status);
+	}
+
+	/**
+	 * List the metadata paths and versions in the tenant.
+	 * @param tenantId tenant id.
+	 * @param prefix path prefix. e.g. "/entity/"
+	 * @return "path\tversion" sorted by the path.
+	 * @throws Exception if iPLAss fails or the API is not found.
+	 */
+	private static List<String> list(int tenantId, String prefix) throws Exception {
+		// MetaDataContext.definitionList(prefix) returns the MetaDataEntryInfo of each definition.
+		Object result = MetaDataPathList.invokeMetaDataContext(tenantId, "definitionList", prefix);
+		List<String> lines = new ArrayList<>();
+		if (null != result) {
+			for (Object info : (Collection<?>) result) {
+				Object path = info.getClass().getMethod("getPath").invoke(info);
+				Object version = info.getClass().getMethod("getVersion").invoke(info);
+				lines.add(path + "\t" + version);
+			}
+		}
+		Collections.sort(lines);
+		return lines;
+	}
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.launcher;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.gradle.api.Project;
+import org.gradle.api.provider.Property;
+import org.gradle.process.JavaExecSpec;
+
+/**
+ * JavaExecSpec that records the configuration instead of executing.
+ *
+ * <p>
+ * Used to hand over the execution to a pre-launched batch JVM, or to execute the batch in process. Only the settings used by the batch tasks are supported
+ * (main class, arguments, jvm arguments, system properties, classpath, executable and output streams).
+ * If any other setting is used, UnsupportedOperationException is thrown, and the batch is executed with javaexec.
+ * </p>
+ */
+public class RecordingJavaExecSpec implements InvocationHandler {
+	/** project */
+	private final Project project;
+	/** recording spec */
+	private final JavaExecSpec spec;
+	/** main class */
+	private final Property<String> mainClass;
+	/** arguments */
+	private final List<String> args = new ArrayList<>();
+	/** jvm arguments */
+	private final List<String> jvmArgs = new ArrayList<>();
+	/** system properties */
+	private final Map<String, String> systemProperties = new LinkedHashMap<>();
+	/** classpath */
+	private final List<File> classpath = new ArrayList<>();
+	/** executable. null if not set */
+	private String executable;
+	/** standard output */
+	private OutputStream standardOutput = System.out;
+	/** error output */
+	private OutputStream errorOutput = System.err;
+
+	/**
+	 * constructor
+	 * @param project project
+	 */
+	public RecordingJavaExecSpec(Project project) {
+		this.project = project;
+		this.mainClass = project.getObjects().property(String.class);
+		this.spec = (JavaExecSpec) Proxy.newProxyInstance(JavaExecSpec.class.getClassLoader(), new Class<?>[] { JavaExecSpec.class }, this);
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] methodArgs) throws Throwable {
+		Object arg = null == methodArgs || 0 == methodArgs.length ? null : methodArgs[0];
+
+		switch (method.getName()) {
+		case "getMainClass":
+			return mainClass;
+		case "args":
+			args.addAll(toStrings(arg));
+			return proxy;
+		case "setArgs":
+			args.clear();
+			args.addAll(toStrings(arg));
+			return proxy;
+		case "getArgs":
+			return args;
+		case "jvmArgs":
+			jvmArgs.addAll(toStrings(arg));
+			return proxy;
+		case "setJvmArgs":
+			jvmArgs.clear();
+			jvmArgs.addAll(toStrings(arg));
+			return proxy;
+		case "getJvmArgs":
+			return jvmArgs;
+		case "systemProperty":
+			systemProperties.put((String) arg, String.valueOf(methodArgs[1]));
+			return proxy;
+		case "classpath":
+			classpath.addAll(project.files(arg).getFiles());
+			return proxy;
+		case "setExecutable":
+			executable = null == arg ? null : arg.toString();
+			return null;
+		case "executable":
+			executable = null == arg ? null : arg.toString();
+			return proxy;
+		case "getExecutable":
+			return executable;
+		case "setStandardOutput":
+			standardOutput = (OutputStream) arg;
+			return proxy;
+		case "getStandardOutput":
+			return standardOutput;
+		case "setErrorOutput":
+			errorOutput = (OutputStream) arg;
+			return proxy;
+		case "getErrorOutput":
+			return errorOutput;
+		case "toString":
+			return "RecordingJavaExecSpec[" + mainClass.getOrNull() + "]";
+		case "hashCode":
+			return System.identityHashCode(proxy);
+		case "equals":
+			return proxy == arg;
+		default:
+			throw new UnsupportedOperationException("JavaExecSpec." + method.getName() + " is not supported by the recording.");
+		}
+	}
+
+	/**
+	 * @return recording spec.
+	 */
+	public JavaExecSpec getSpec() {
+		return spec;
+	}
+
+	/**
+	 * @return main class.
+	 */
+	public String getMainClass() {
+		return mainClass.getOrNull();
+	}
+
+	/**
+	 * @return arguments.
+	 */
+	public List<String> getArgs() {
+		return args;
+	}
+
+	/**
+	 * @return jvm arguments.
+	 */
+	public List<String> getJvmArgs() {
+		return jvmArgs;
+	}
+
+	/**
+	 * @return system properties.
+	 */
+	public Map<String, String> getSystemProperties() {
+		return systemProperties;
+	}
+
+	/**
+	 * Get the system properties of the "-D" jvm arguments and the system properties.
+	 * @return system properties.
+	 */
+	public Map<String, String> getAllSystemProperties() {
+		Map<String, String> all = new LinkedHashMap<>();
+		jvmArgs.stream().filter(a -> a.startsWith("-D")).forEach(a -> {
+			int separator = a.indexOf('=');
+			all.put(a.substring(2, -1 == separator ? a.length() : separator), -1 == separator ? "" : a.substring(separator + 1));
+		});
+		all.putAll(systemProperties);
+		return all;
+	}
+
+	/**
+	 * @return classpath.
+	 */
+	public List<File> getClasspath() {
+		return classpath;
+	}
+
+	/**
+	 * @return executable. null if not set.
+	 */
+	public String getExecutable() {
+		return executable;
+	}
+
+	/**
+	 * @return standard output.
+	 */
+	public OutputStream getStandardOutput() {
+		return standardOutput;
+	}
+
+	/**
+	 * @return error output.
+	 */
+	public OutputStream getErrorOutput() {
+		return errorOutput;
+	}
+
+	private static List<String> toStrings(Object arg) {
+		List<String> strings = new ArrayList<>();
+		if (arg instanceof Object[]) {
+			Arrays.stream((Object[]) arg).forEach(a -> strings.add(String.valueOf(a)));
+		} else if (arg instanceof Iterable) {
+			((Iterable<?>) arg).forEach(a -> strings.add(String.valueOf(a)));
+		} else if (null != arg) {
+			strings.add(String.valueOf(arg));
+		}
+		return strings;
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.launcher;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Executes the service-config viewer for multiple service-config files concurrently in a JVM.
+ *
+ * <p>
+ * Each service-config is executed in its own class loader created from java.class.path, so the static state of iPLAss is not shared.
+ * "mtp.config" and the other system properties, System.out and System.err are isolated per service-config.
+ * The output and the result of each service-config are written to the output directory.
+ * </p>
+ *
+ * <pre>
+ * java ServiceConfigMatrix ${outputDirectory} ${mainClass} ${configCount} [configs...] [args...]
+ * </pre>
+ *
+ * <ul>
+ * <li>config_n.out - output of the n-th service-config.</li>
+ * <li>config_n.properties - status = exit status, error = exception if the execution failed.</li>
+ * </ul>
+ *
+ * <p>
+ * System.exit of the main class is prevented with {@link ExitGuard}, so the security manager is required.
+ * If it is not allowed (Java 24 or later), nothing is executed and the exit status is 1. Execute a JVM for each service-config instead.
+ * </p>
+ *
+ * <p>
+ * This class is executed on the batch classpath, so it must depend only on the JDK and must not have nested classes.
+ * </p>
+ */
+public class ServiceConfigMatrix {
+	/** system property of the service-config */
+	public static final String CONFIG_PROPERTY = "mtp.config";
+
+	/**
+	 * private constructor.
+	 */
+	private ServiceConfigMatrix() {
+	}
+
+	/**
+	 * entry point.
+	 * @param args output directory, main class, number of configs, configs and arguments of the main class.
+	 */
+	public static void main(String[] args) {
+		File outputDirectory = new File(args[0]);
+		String mainClass = args[1];
+		int configCount = Integer.parseInt(args[2]);
+		List<String> configs = Arrays.asList(Arrays.copyOfRange(args, 3, 3 + configCount));
+		String[] mainArgs = Arrays.copyOfRange(args, 3 + configCount, args.length);
+
+		if (!ExitGuard.install()) {
+			System.err.println("The security manager is not allowed. System.exit of " + mainClass + " would terminate all executions.");
+			System.exit(1);
+		}
+
+		int status = 1;
+		try {
+			outputDirectory.mkdirs();
+			IsolatedProperties.install();
+			IsolatedPrintStream.install();
+
+			URL[] classpath = classpath();
+			ExecutorService executor = Executors.newFixedThreadPool(configs.size());
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < configs.size(); i++) {
+				int index = i;
+				futures.add(executor.submit(() -> execute(outputDirectory, index, configs.get(index), mainClass, mainArgs, classpath)));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+			status = 0;
+
+		} catch (Exception e) {
+			System.err.println("Unable to execute the service-configs. " + e);
+			e.printStackTrace();
+		} finally {
+			// terminate the threads left by the executions, even if waiting fails.
+			System.exit(status);
+		}
+	}
+
+	/**
+	 * Execute the main class with a service-config.
+	 * @param outputDirectory output directory.
+	 * @param index index of the service-config.
+	 * @param config service-config.
+	 * @param mainClass main class.
+	 * @param mainArgs arguments of the main class.
+	 * @param classpath classpath of the class loader.
+	 */
+	private static void execute(File outputDirectory, int index, String config, String mainClass, String[] mainArgs, URL[] classpath) {
+		Properties result = new Properties();
+		File outputFile = new File(outputDirectory, "config_" + index + ".out");
+
+		try (PrintStream output = new PrintStream(new FileOutputStream(outputFile), true, "UTF-8");
+				URLClassLoader loader = new URLClassLoader(classpath, ClassLoader.getSystemClassLoader().getParent())) {
+			IsolatedProperties.bind(Collections.singletonMap(CONFIG_PROPERTY, config));
+			IsolatedPrintStream.bind(output);
+			Thread.currentThread().setContextClassLoader(loader);
+
+			try {
+				Class.forName(mainClass, true, loader).getMethod("main", String[].class).invoke(null, (Object) mainArgs.clone());
+				result.setProperty("status", "0");
+
+			} catch (InvocationTargetException e) {
+				Integer status = ExitGuard.getExitStatus(e.getCause());
+				if (null != status) {
+					result.setProperty("status", String.valueOf(status));
+				} else {
+					result.setProperty("error", String.valueOf(e.getCause()));
+					e.getCause().printStackTrace(output);
+				}
+
+			} catch (ReflectiveOperationException | LinkageError e) {
+				result.setProperty("error", String.valueOf(e));
+				e.printStackTrace(output);
+
+			} finally {
+				IsolatedPrintStream.unbind();
+				IsolatedProperties.unbind();
+				Thread.currentThread().setContextClassLoader(null);
+			}
+
+		} catch (IOException e) {
+			result.setProperty("error", String.valueOf(e));
+		}
+
+		File resultFile = new File(outputDirectory, "config_" + index + ".properties");
+		try (OutputStream output = Files.newOutputStream(resultFile.toPath())) {
+			result.store(output, config);
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to create file '" + resultFile.getAbsolutePath() + "'.", e);
+		}
+	}
+
+	private static URL[] classpath() throws MalformedURLException {
+		List<URL> urls = new ArrayList<>();
+		for (String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+			if (!path.isEmpty()) {
+				urls.add(new File(path).toURI().toURL());
+			}
+		}
+		return urls.toArray(new URL[urls.size()]);
+	}
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.launcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logger;
+
+/**
+ * Batch JVM launched before the task is executed.
+ *
+ * <p>
+ * The JVM is started with the dependencies and {@link BatchLauncher} in the standby mode, and warms up class loading while the project is compiled.
+ * When the task is executed, the classpath entries that are not in the dependencies (project classes and resources), system properties,
+ * the main class and the arguments are handed over to the JVM. The entries are searched before the dependencies, as with javaexec.
+ * If the execution is not compatible with the JVM (different executable or jvm arguments, or a project entry that follows the dependencies),
+ * the handover is rejected and the JVM should be discarded.
+ * If the JVM rejects the entries because they contain a class already loaded from the dependencies, {@link #handover} returns false.
+ * </p>
+ *
+ * <p>
+ * The standard output and error of the JVM are read from the start, so that the JVM is not blocked by a full pipe.
+ * The output before the handover is buffered and written to the output of the execution.
+ * The standard input is kept open until the handover or discard, the JVM exits when it is closed without the handover.
+ * </p>
+ */
+public class SpeculativeLaunch {
+	/** task name */
+	private final String name;
+	/** control directory */
+	private final File controlDirectory;
+	/** executable */
+	private final String executable;
+	/** jvm arguments */
+	private final List<String> jvmArgs;
+	/** dependencies */
+	private final List<File> dependencies;
+	/** logger */
+	private final Logger logger;
+	/** process */
+	private final Process process;
+	/** standard output of the process */
+	private final OutputPump out;
+	/** standard error of the process */
+	private final OutputPump err;
+
+	private SpeculativeLaunch(String name, File controlDirectory, String executable, List<String> jvmArgs, List<File> dependencies,
+			Logger logger, Process process) {
+		this.name = name;
+		this.controlDirectory = controlDirectory;
+		this.executable = executable;
+		this.jvmArgs = jvmArgs;
+		this.dependencies = dependencies;
+		this.logger = logger;
+		this.process = process;
+		this.out = new OutputPump(process.getInputStream(), name + "-speculative-output", logger);
+		this.err = new OutputPump(process.getErrorStream(), name + "-speculative-error", logger);
+		out.start();
+		err.start();
+	}
+
+	/**
+	 * Start the batch JVM in the standby mode.
+	 * @param name task name.
+	 * @param controlDirectory control directory.
+	 * @param launcherDirectory directory where the launcher classes are extracted.
+	 * @param executable java executable. If null, the java used by Gradle is used.
+	 * @param jvmArgs jvm arguments.
+	 * @param dependencies classpath of the dependencies.
+	 * @param logger logger.
+	 * @return started JVM.
+	 */
+	public static SpeculativeLaunch start(String name, File controlDirectory, File launcherDirectory, String executable, List<String> jvmArgs,
+			List<File> dependencies, Logger logger) {
+		BatchLauncher.extract(launcherDirectory);
+
+		controlDirectory.mkdirs();
+		File[] olds = controlDirectory.listFiles();
+		if (null != olds) {
+			for (File old : olds) {
+				old.delete();
+			}
+		}
+
+		// the dependencies are passed in a file, because the command line length is limited.
+		File classpathFile = new File(controlDirectory, "classpath.txt");
+		try {
+			Files.write(classpathFile.toPath(), dependencies.stream().map(File::getAbsolutePath).collect(Collectors.toList()), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to create file '" + classpathFile.getAbsolutePath() + "'.", e);
+		}
+
+		String javaExecutable = null != executable ? executable : defaultExecutable();
+		List<String> command = new ArrayList<>();
+		command.add(javaExecutable);
+		command.addAll(jvmArgs);
+		command.add("-Djava.system.class.loader=" + StandbyClassLoader.class.getName());
+		command.add("-D" + StandbyClassLoader.CLASSPATH_PROPERTY + "=" + classpathFile.getAbsolutePath());
+		command.add("-cp");
+		command.add(launcherDirectory.getAbsolutePath());
+		command.add(BatchLauncher.class.getName());
+		command.add(controlDirectory.getAbsolutePath());
+		command.add(BatchLauncher.STANDBY);
+		logger.info("{} speculative launch: {}", name, command);
+
+		try {
+			// the standard input is kept open to notify the end of the Gradle process.
+			Process process = new ProcessBuilder(command).start();
+			return new SpeculativeLaunch(name, controlDirectory, javaExecutable, new ArrayList<>(jvmArgs), new ArrayList<>(dependencies), logger,
+					process);
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to start the batch JVM.", e);
+		}
+	}
+
+	/**
+	 * Hand over the execution to the JVM, and wait for the completion.
+	 * @param spec recorded execution.
+	 * @param classpath whole classpath of the execution. used to check that the dependencies of the JVM are not changed.
+	 * @return true if handed over. false if the execution is not compatible with the JVM.
+	 */
+	public boolean handover(RecordingJavaExecSpec spec, Collection<File> classpath) {
+		String reason = validate(spec, classpath);
+		if (null != reason) {
+			logger.info("{} speculative launch is not used. {}", name, reason);
+			return false;
+		}
+
+		// the entries are taken from the classpath files, not from the pathing jar.
+		Properties launch = new Properties();
+		int i = 0;
+		for (File entry : classpath) {
+			if (!dependencies.contains(entry)) {
+				launch.setProperty("classpath." + i++, entry.getAbsolutePath());
+			}
+		}
+
+		Map<String, String> systemProperties = new LinkedHashMap<>();
+		spec.getJvmArgs().stream().filter(a -> a.startsWith("-D") && !jvmArgs.contains(a)).forEach(a -> {
+			int separator = a.indexOf('=');
+			systemProperties.put(a.substring(2, -1 == separator ? a.length() : separator), -1 == separator ? "" : a.substring(separator + 1));
+		});
+		systemProperties.putAll(spec.getSystemProperties());
+		i = 0;
+		for (Map.Entry<String, String> property : systemProperties.entrySet()) {
+			launch.setProperty("systemProperty.key." + i, property.getKey());
+			launch.setProperty("systemProperty.val." + i, property.getValue());
+			i++;
+		}
+
+		launch.setProperty("mainClass", spec.getMainClass());
+		for (i = 0; i < spec.getArgs().size(); i++) {
+			launch.setProperty("args." + i, spec.getArgs().get(i));
+		}
+
+		File file = new File(controlDirectory, BatchLauncher.LAUNCH_FILE);
+		File temp = new File(controlDirectory, BatchLauncher.LAUNCH_FILE + ".tmp");
+		try (OutputStream output = Files.newOutputStream(temp.toPath())) {
+			launch.store(output, null);
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to create file '" + temp.getAbsolutePath() + "'.", e);
+		}
+		try {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed during file operation.", e);
+		}
+		logger.info("{} is handed over to the speculative launch. {}", name, launch);
+
+		int exitValue;
+		try {
+			out.handover(spec.getStandardOutput());
+			err.handover(spec.getErrorOutput());
+			closeInput();
+
+			exitValue = process.waitFor();
+			out.join();
+			err.join();
+		} catch (IOException e) {
+			discard();
+			throw new GradleException("Failed to write the output of the speculative launch.", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			discard();
+			throw new GradleException("Interrupted while waiting for the batch to complete.", e);
+		}
+
+		File rejected = new File(controlDirectory, BatchLauncher.REJECTED_FILE);
+		if (BatchLauncher.EXIT_CODE_REJECTED == exitValue && rejected.exists()) {
+			try {
+				logger.info("{} speculative launch is not used. {}", name, new String(Files.readAllBytes(rejected.toPath()), StandardCharsets.UTF_8));
+			} catch (IOException e) {
+				logger.info("{} speculative launch is not used. The classpath entries are rejected.", name);
+			}
+			return false;
+		}
+
+		if (0 != exitValue) {
+			throw new GradleException("Process '" + name + " speculative launch' finished with non-zero exit value " + exitValue);
+		}
+		return true;
+	}
+
+	/**
+	 * Discard the JVM.
+	 */
+	public void discard() {
+		closeInput();
+		if (!process.isAlive()) {
+			return;
+		}
+
+		File file = new File(controlDirectory, BatchLauncher.COMMAND_FILE);
+		try {
+			Files.write(file.toPath(), BatchLauncher.COMMAND_EXIT.getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			logger.debug("Unable to send exit command to the speculative launch.", e);
+		}
+		process.destroyForcibly();
+		logger.info("{} speculative launch is discarded.", name);
+	}
+
+	/**
+	 * Validate the compatibility of the execution.
+	 * @param spec recorded execution.
+	 * @param classpath whole classpath of the execution.
+	 * @return reason if not compatible. null if compatible.
+	 */
+	private String validate(RecordingJavaExecSpec spec, Collection<File> classpath) {
+		if (!process.isAlive()) {
+			return "The batch JVM exited with " + process.exitValue() + ".";
+		}
+
+		String specExecutable = null != spec.getExecutable() ? spec.getExecutable() : defaultExecutable();
+		if (!executable.equals(specExecutable)) {
+			return "The executable is changed. " + executable + " -> " + specExecutable;
+		}
+
+		// only system properties can be added on handover.
+		List<String> specJvmArgs = spec.getJvmArgs().stream().filter(a -> !a.startsWith("-D")).collect(Collectors.toList());
+		List<String> launchJvmArgs = jvmArgs.stream().filter(a -> !a.startsWith("-D")).collect(Collectors.toList());
+		if (!specJvmArgs.equals(launchJvmArgs)) {
+			return "The jvm arguments are changed. " + launchJvmArgs + " -> " + specJvmArgs;
+		}
+
+		if (!classpath.containsAll(dependencies)) {
+			return "The dependencies are changed.";
+		}
+
+		// the project entries are searched before the dependencies.
+		boolean dependency = false;
+		for (File entry : classpath) {
+			if (dependencies.contains(entry)) {
+				dependency = true;
+			} else if (dependency) {
+				return "The classpath entry '" + entry.getAbsolutePath() + "' follows the dependencies.";
+			}
+		}
+
+		if (null == spec.getMainClass()) {
+			return "The main class is not set.";
+		}
+		return null;
+	}
+
+	private void closeInput() {
+		try {
+			process.getOutputStream().close();
+		} catch (IOException e) {
+			logger.debug("Unable to close the standard input of the speculative launch.", e);
+		}
+	}
+
+	private static String defaultExecutable() {
+		String executable = System.getProperty("os.name").toLowerCase().contains("windows") ? "java.exe" : "java";
+		return new File(new File(System.getProperty("java.home"), "bin"), executable).getAbsolutePath();
+	}
+
+	/**
+	 * Thread that reads the output of the process.
+	 * The output is buffered until the handover, and written to the output of the execution after the handover.
+	 */
+	private static final class OutputPump extends Thread {
+		/** max size of the output buffered before the handover */
+		private static final int BUFFER_LIMIT = 1024 * 1024;
+
+		/** output of the process */
+		private final InputStream input;
+		/** logger */
+		private final Logger logger;
+		/** output before the handover */
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		/** output of the execution. null before the handover */
+		private OutputStream output;
+
+		private OutputPump(InputStream input, String name, Logger logger) {
+			super(name);
+			setDaemon(true);
+			this.input = input;
+			this.logger = logger;
+		}
+
+		@Override
+		public void run() {
+			byte[] bytes = new byte[8192];
+			try {
+				int length;
+				while (-1 != (length = input.read(bytes))) {
+					write(bytes, length);
+				}
+			} catch (IOException e) {
+				logger.debug("Failed to read the output of the speculative launch.", e);
+			}
+		}
+
+		/**
+		 * Write the buffered output and switch to the output of the execution.
+		 * @param output output of the execution.
+		 * @throws IOException if an I/O error occurs.
+		 */
+		private synchronized void handover(OutputStream output) throws IOException {
+			buffer.writeTo(output);
+			output.flush();
+			buffer.reset();
+			this.output = output;
+		}
+
+		private synchronized void write(byte[] bytes, int length) throws IOException {
+			if (null != output) {
+				output.write(bytes, 0, length);
+				output.flush();
+			} else if (buffer.size() + length <= BUFFER_LIMIT) {
+				buffer.write(bytes, 0, length);
+			} else {
+				logger.debug("The output of the speculative launch exceeds the buffer before the handover. {} bytes are discarded.", length);
+			}
+		}
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.launcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+/**
+ * Build service that holds the batch JVMs launched speculatively.
+ *
+ * <p>
+ * The JVMs that are not taken by the tasks (e.g. the task is skipped or fails before the execution) are discarded when the build finishes.
+ * </p>
+ */
+public abstract class SpeculativeLaunchService implements BuildService<BuildServiceParameters.None>, AutoCloseable {
+	/** task path, launched JVM */
+	private final Map<String, SpeculativeLaunch> launches = new ConcurrentHashMap<>();
+
+	/**
+	 * Register the launched JVM.
+	 * @param taskPath task path.
+	 * @param launch launched JVM.
+	 */
+	public void put(String taskPath, SpeculativeLaunch launch) {
+		SpeculativeLaunch old = launches.put(taskPath, launch);
+		if (null != old) {
+			old.discard();
+		}
+	}
+
+	/**
+	 * Take the launched JVM.
+	 * @param taskPath task path.
+	 * @return launched JVM. null if not launched or already taken.
+	 */
+	public SpeculativeLaunch take(String taskPath) {
+		return launches.remove(taskPath);
+	}
+
+	@Override
+	public void close() {
+		List<SpeculativeLaunch> remaining = new ArrayList<>(launches.values());
+		launches.clear();
+		remaining.forEach(SpeculativeLaunch::discard);
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.launcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * System class loader of the pre-launched batch JVM.
+ *
+ * <p>
+ * Specified by -Djava.system.class.loader. This class loader loads the whole java.class.path itself, instead of the built-in application class loader,
+ * so that the classpath entries added on handover are visible to the classes already loaded from the dependencies.
+ * The added entries (project classes and resources) are searched before the dependencies, in the same order as the javaexec classpath.
+ * </p>
+ *
+ * <p>
+ * The classes loaded from the dependencies before the handover are recorded. If an added entry contains one of them,
+ * the class can not be replaced, so the handover must be rejected.
+ * </p>
+ *
+ * <p>
+ * The dependencies are listed in the file specified by the system property "iplass.launcher.classpath" (one entry per line),
+ * so that the command line does not exceed the limit of the OS. The entries are appended to java.class.path.
+ * </p>
+ *
+ * <p>
+ * This class is executed on the batch classpath, so it must depend only on the JDK and must not have nested classes.
+ * </p>
+ */
+public class StandbyClassLoader extends URLClassLoader {
+	static {
+		ClassLoader.registerAsParallelCapable();
+	}
+
+	/** system property of the classpath file */
+	public static final String CLASSPATH_PROPERTY = "iplass.launcher.classpath";
+
+	/** class names loaded from the dependencies before the handover */
+	private final Set<String> standbyClasses = ConcurrentHashMap.newKeySet();
+	/** class loaders of the added entries. searched before the dependencies */
+	private volatile List<URLClassLoader> added = Collections.emptyList();
+
+	/**
+	 * constructor. called by the JVM.
+	 * @param parent built-in application class loader.
+	 */
+	public StandbyClassLoader(ClassLoader parent) {
+		// skip the application class loader, it loads the same classpath.
+		super(classpath(), parent.getParent());
+	}
+
+	@Override
+	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+		// this class is loaded by the application class loader. do not define it again.
+		if (StandbyClassLoader.class.getName().equals(name)) {
+			return StandbyClassLoader.class;
+		}
+		return super.loadClass(name, resolve);
+	}
+
+	@Override
+	protected Class<?> findClass(String name) throws ClassNotFoundException {
+		String path = name.replace('.', '/') + ".class";
+		for (URLClassLoader entry : added) {
+			URL url = entry.findResource(path);
+			if (null != url) {
+				return defineClass(name, url, entry.getURLs()[0]);
+			}
+		}
+
+		Class<?> loaded = super.findClass(name);
+		if (added.isEmpty()) {
+			standbyClasses.add(name);
+		}
+		return loaded;
+	}
+
+	@Override
+	public URL findResource(String name) {
+		for (URLClassLoader entry : added) {
+			URL url = entry.findResource(name);
+			if (null != url) {
+				return url;
+			}
+		}
+		return super.findResource(name);
+	}
+
+	@Override
+	public Enumeration<URL> findResources(String name) throws IOException {
+		List<URL> urls = new ArrayList<>();
+		for (URLClassLoader entry : added) {
+			urls.addAll(Collections.list(entry.findResources(name)));
+		}
+		urls.addAll(Collections.list(super.findResources(name)));
+		return Collections.enumeration(urls);
+	}
+
+	/**
+	 * Add the classpath entries. The entries are searched before the dependencies, in the specified order.
+	 * @param files classpath entries.
+	 * @return class names that are already loaded from the dependencies and also exist in the entries. If not empty, the entries can not be used.
+	 */
+	public synchronized List<String> addClasspath(List<File> files) {
+		List<URLClassLoader> loaders = new ArrayList<>(added);
+		for (File file : files) {
+			try {
+				// no parent, only the entry itself is searched.
+				loaders.add(new URLClassLoader(new URL[] { file.toURI().toURL() }, null));
+			} catch (MalformedURLException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+
+		List<String> shadowed = new ArrayList<>();
+		for (String name : standbyClasses) {
+			String path = name.replace('.', '/') + ".class";
+			if (loaders.stream().anyMatch(l -> null != l.findResource(path))) {
+				shadowed.add(name);
+			}
+		}
+
+		if (shadowed.isEmpty()) {
+			added = Collections.unmodifiableList(loaders);
+		}
+		return shadowed;
+	}
+
+	private Class<?> defineClass(String name, URL url, URL entry) throws ClassNotFoundException {
+		byte[] bytes;
+		try (InputStream input = url.openStream()) {
+			bytes = readAll(input);
+		} catch (IOException e) {
+			throw new ClassNotFoundException(name, e);
+		}
+
+		int separator = name.lastIndexOf('.');
+		if (-1 != separator) {
+			try {
+				definePackage(name.substring(0, separator), null, null, null, null, null, null, null);
+			} catch (IllegalArgumentException e) {
+				// already defined.
+			}
+		}
+		return defineClass(name, bytes, 0, bytes.length, new CodeSource(entry, (CodeSigner[]) null));
+	}
+
+	private static byte[] readAll(InputStream input) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int length;
+		while (-1 != (length = input.read(buffer))) {
+			output.write(buffer, 0, length);
+		}
+		return output.toByteArray();
+	}
+
+	private static URL[] classpath() {
+		List<String> paths = new ArrayList<>(Arrays.asList(System.getProperty("java.class.path").split(File.pathSeparator)));
+		String classpathFile = System.getProperty(CLASSPATH_PROPERTY);
+		if (null != classpathFile) {
+			try {
+				List<String> dependencies = Files.readAllLines(Paths.get(classpathFile), StandardCharsets.UTF_8);
+				paths.addAll(dependencies);
+				dependencies.forEach(d -> System.setProperty("java.class.path", System.getProperty("java.class.path") + File.pathSeparator + d));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		List<URL> urls = new ArrayList<>();
+		for (String path : paths) {
+			if (path.isEmpty()) {
+				continue;
+			}
+
+			try {
+				urls.add(new File(path).toURI().toURL());
+			} catch (MalformedURLException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+		return urls.toArray(new URL[urls.size()]);
+	}
+}
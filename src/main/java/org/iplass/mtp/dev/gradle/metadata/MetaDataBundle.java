@@ -0,0 +1,220 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.metadata;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.iplass.mtp.dev.gradle.PropertyFileUtil;
+
+/**
+ * Metadata bundle archive.
+ *
+ * <p>
+ * The bundle is a zip file of the exported metadata files with an index entry.
+ * The index holds the content hash of each file and the fingerprint of the bundle, so consumers can extract only the paths they need,
+ * and only the files that changed since the previous extraction, by reading the entries through the zip central directory.
+ * </p>
+ *
+ * <ul>
+ * <li>META-INF/iplass-metadata-index.properties - ${relative path} = content hash, and fingerprint.</li>
+ * <li>${relative path} - metadata file.</li>
+ * </ul>
+ */
+public class MetaDataBundle {
+	/** usage attribute value of the bundle variant */
+	public static final String USAGE = "iplass-metadata-bundle";
+	/** index entry name */
+	private static final String INDEX_ENTRY = "META-INF/iplass-metadata-index.properties";
+	/** index key of the fingerprint */
+	private static final String FINGERPRINT_KEY = "META-INF/fingerprint";
+
+	/**
+	 * private constructor.
+	 */
+	private MetaDataBundle() {
+	}
+
+	/**
+	 * Create the bundle of the directory.
+	 *
+	 * <p>
+	 * If the bundle of the same content exists, the bundle is not rewritten, so the consumers see it as unchanged.
+	 * </p>
+	 *
+	 * @param bundle bundle file.
+	 * @param directory metadata directory.
+	 * @param manifest manifest of the directory.
+	 * @return true if the bundle is created. false if the bundle is unchanged.
+	 */
+	public static boolean create(File bundle, File directory, MetaDataManifest manifest) {
+		String fingerprint = manifest.getFingerprint();
+		if (bundle.exists() && fingerprint.equals(readIndex(bundle).getProperty(FINGERPRINT_KEY))) {
+			return false;
+		}
+
+		bundle.getParentFile().mkdirs();
+		File temp = new File(bundle.getParentFile(), bundle.getName() + ".tmp");
+		try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			Properties index = new Properties();
+			index.putAll(manifest.getHashes());
+			index.setProperty(FINGERPRINT_KEY, fingerprint);
+
+			// the index is the first entry, so that it can be read without the central directory.
+			ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+			index.store(indexBytes, null);
+			out.putNextEntry(new ZipEntry(INDEX_ENTRY));
+			out.write(indexBytes.toByteArray());
+			out.closeEntry();
+
+			for (String path : manifest.getHashes().keySet()) {
+				out.putNextEntry(new ZipEntry(path));
+				Files.copy(new File(directory, path).toPath(), out);
+				out.closeEntry();
+			}
+
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to create file '" + bundle.getAbsolutePath() + "'.", e);
+		}
+
+		try {
+			Files.move(temp.toPath(), bundle.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed during file operation.", e);
+		}
+		return true;
+	}
+
+	/**
+	 * Extract the paths from the bundle.
+	 *
+	 * <p>
+	 * The content hashes of the extracted files are recorded in the state file. Files whose hash is the same as the state are not extracted again.
+	 * Files that were extracted before and no longer exist in the bundle are deleted.
+	 * Absolute paths and paths that contain ".." are rejected, so that no file outside the destination directory is written or deleted.
+	 * </p>
+	 *
+	 * @param bundle bundle file.
+	 * @param directory destination directory.
+	 * @param paths path prefixes to extract (e.g. "mtp/entity/"). If empty, all files are extracted.
+	 * @param stateFile state file of the extraction.
+	 * @return extracted paths.
+	 */
+	public static List<String> extract(File bundle, File directory, Collection<String> paths, File stateFile) {
+		Properties state = stateFile.exists() ? PropertyFileUtil.load(stateFile) : new Properties();
+		// the state may be left by an older extraction. do not delete files outside the directory.
+		state.stringPropertyNames().stream().filter(p -> !isSafePath(p)).forEach(state::remove);
+		Map<String, String> extracted = new TreeMap<>();
+		List<String> changed = new ArrayList<>();
+
+		try (ZipFile zip = new ZipFile(bundle)) {
+			Properties index = readIndex(zip);
+			for (String path : index.stringPropertyNames()) {
+				if (FINGERPRINT_KEY.equals(path) || !matches(path, paths)) {
+					continue;
+				}
+
+				if (!isSafePath(path)) {
+					throw new RuntimeException("The path '" + path + "' in the bundle '" + bundle.getAbsolutePath() + "' is outside the destination directory.");
+				}
+
+				String hash = index.getProperty(path);
+				File file = new File(directory, path);
+				extracted.put(path, hash);
+				if (hash.equals(state.getProperty(path)) && file.exists()) {
+					continue;
+				}
+
+				// read only the entry of the path.
+				ZipEntry entry = zip.getEntry(path);
+				if (null == entry) {
+					throw new IOException("The entry '" + path + "' does not exist in the bundle.");
+				}
+				file.getParentFile().mkdirs();
+				try (InputStream input = zip.getInputStream(entry)) {
+					Files.copy(input, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+				changed.add(path);
+			}
+
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to read file '" + bundle.getAbsolutePath() + "'.", e);
+		}
+
+		// delete the files removed from the bundle.
+		for (String path : state.stringPropertyNames()) {
+			if (!extracted.containsKey(path)) {
+				new File(directory, path).delete();
+			}
+		}
+
+		stateFile.getParentFile().mkdirs();
+		PropertyFileUtil.save(stateFile, extracted);
+		return changed;
+	}
+
+	/**
+	 * Check that the path is a relative path inside the directory.
+	 * @param path path in the bundle.
+	 * @return true if the path is relative and does not contain "..".
+	 */
+	public static boolean isSafePath(String path) {
+		String normalized = path.replace('\\', '/');
+		if (normalized.isEmpty() || normalized.startsWith("/") || new File(path).isAbsolute() || normalized.matches("^[A-Za-z]:.*")) {
+			return false;
+		}
+		return Arrays.stream(normalized.split("/")).noneMatch(".."::equals);
+	}
+
+	private static boolean matches(String path, Collection<String> paths) {
+		return paths.isEmpty() || paths.stream().anyMatch(p -> path.startsWith(p.startsWith("/") ? p.substring(1) : p));
+	}
+
+	private static Properties readIndex(File bundle) {
+		try (ZipFile zip = new ZipFile(bundle)) {
+			return readIndex(zip);
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to read file '" + bundle.getAbsolutePath() + "'.", e);
+		}
+	}
+
+	private static Properties readIndex(ZipFile zip) throws IOException {
+		ZipEntry entry = zip.getEntry(INDEX_ENTRY);
+		if (null == entry) {
+			throw new IOException("The index entry does not exist in the bundle.");
+		}
+
+		try (InputStream input = zip.getInputStream(entry)) {
+			return PropertyFileUtil.load(input);
+		}
+	}
+}
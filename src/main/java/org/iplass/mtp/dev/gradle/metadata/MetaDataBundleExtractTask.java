@@ -0,0 +1,96 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.metadata;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Optional;
+import org.iplass.mtp.dev.gradle.AbstractTask;
+import org.iplass.mtp.dev.gradle.history.TaskHistory;
+
+/**
+ * A task that extracts the metadata files from the metadata bundle published by another project.
+ *
+ * <p>
+ * The bundle is resolved from the iplassMetaDataBundle configuration. Only the files under the specified paths are extracted,
+ * and only the files that changed since the previous extraction are read from the bundle. See {@link MetaDataBundle}.
+ * </p>
+ */
+public abstract class MetaDataBundleExtractTask extends AbstractTask {
+	/**
+	 * @return metadata bundle. Default value is the files of the iplassMetaDataBundle configuration.
+	 */
+	@InputFiles
+	abstract protected ConfigurableFileCollection getBundle();
+
+	/**
+	 * @return destination directory.
+	 */
+	@Input
+	abstract protected Property<String> getDirectory();
+
+	/**
+	 * get paths to extract.
+	 *
+	 * <p>
+	 * The path is a prefix of the path relative to the bundle directory. e.g. "mtp/entity/"
+	 * If not specified, all files are extracted.
+	 * </p>
+	 *
+	 * @return paths to extract.
+	 */
+	@Input
+	@Optional
+	abstract protected ListProperty<String> getPaths();
+
+	@Override
+	public void doTask() {
+		Set<File> bundles = getBundle().getFiles();
+		if (bundles.isEmpty()) {
+			throw new GradleException("No metadata bundle. Add the dependency of the bundle to the "
+					+ MetaDataPlugin.META_DATA_BUNDLE_CONFIGURATION_NAME + " configuration, and set bundleDirectory of the export task of the project.");
+		}
+		if (1 < bundles.size()) {
+			throw new GradleException("Multiple metadata bundles are resolved. " + bundles);
+		}
+
+		File bundle = bundles.iterator().next();
+		if (!bundle.exists()) {
+			throw new GradleException("The metadata bundle '" + bundle.getAbsolutePath() + "' does not exist. Set bundleDirectory of the export task.");
+		}
+
+		File directory = getProject().file(getDirectory().get());
+		File stateFile = new File(getBuildDirectory("iplass/metadata"), getName() + "_extracted.properties");
+		List<String> extracted;
+		try {
+			extracted = MetaDataBundle.extract(bundle, directory, getPaths().getOrElse(Collections.emptyList()), stateFile);
+		} catch (RuntimeException e) {
+			throw new GradleException(e.getMessage(), e);
+		}
+
+		recordHistory(TaskHistory.METADATA_VOLUME, extracted.size());
+		getLogger().lifecycle("{} files are extracted from the bundle '{}'.", extracted.size(), bundle.getAbsolutePath());
+	}
+}
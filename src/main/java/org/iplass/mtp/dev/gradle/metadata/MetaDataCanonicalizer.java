@@ -0,0 +1,455 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.metadata;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Canonicalizer of the metadata XML files.
+ *
+ * <p>
+ * Each file is read with the StAX cursor API and written in the canonical form, so the memory used for a file does not depend on the file size.
+ * Files are processed in parallel on a fork-join pool. A file is rewritten only if the canonical form differs from the current content,
+ * so the last modified time of canonical files is kept.
+ * </p>
+ *
+ * <ul>
+ * <li>The XML declaration is "1.0" and "UTF-8".</li>
+ * <li>Namespace declarations are sorted by prefix, attributes are sorted by namespace and local name.</li>
+ * <li>Whitespace-only text between elements is removed, and elements are indented with tabs. CDATA sections are kept as CDATA sections.</li>
+ * <li>Elements and attributes whose local name is volatile for the metadata type are removed.</li>
+ * </ul>
+ *
+ * <p>
+ * The metadata type is a path prefix relative to the directory (e.g. "mtp/entity"). Only the files of the specified types are canonicalized,
+ * so that the other XML files in the directory (e.g. logback.xml) are not rewritten. "*" matches all XML files.
+ * The volatile names of the longest matching type are used, and "*" is used for the files that do not match any type.
+ * </p>
+ */
+public class MetaDataCanonicalizer {
+	/** metadata type that matches all files */
+	public static final String ALL_TYPES = "*";
+	/** file extension of the metadata XML */
+	private static final String XML_EXTENSION = ".xml";
+	/** indent */
+	private static final char INDENT = '\t';
+	/** property of the JDK StAX implementation to report CDATA sections as CDATA events */
+	private static final String REPORT_CDATA_PROPERTY = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+	/** max number of failures reported */
+	private static final int MAX_REPORTED_FAILURES = 10;
+
+	/** metadata types to canonicalize */
+	private final List<String> types;
+	/** metadata type and volatile names */
+	private final Map<String, Set<String>> volatileNames;
+	/** StAX input factory */
+	private final XMLInputFactory inputFactory;
+	/** StAX output factory */
+	private final XMLOutputFactory outputFactory;
+
+	/**
+	 * constructor
+	 * @param types metadata types to canonicalize. "*" for all XML files.
+	 * @param volatileNames metadata type and local names of volatile elements and attributes.
+	 * @throws IllegalArgumentException if types is empty.
+	 */
+	public MetaDataCanonicalizer(Collection<String> types, Map<String, ? extends Collection<String>> volatileNames) {
+		if (types.isEmpty()) {
+			throw new IllegalArgumentException("The metadata types to canonicalize are not specified.");
+		}
+
+		this.types = types.stream().map(MetaDataCanonicalizer::normalizeType).collect(Collectors.toList());
+		this.volatileNames = new HashMap<>();
+		volatileNames.forEach((k, v) -> this.volatileNames.put(normalizeType(k), new HashSet<>(v)));
+
+		inputFactory = XMLInputFactory.newInstance();
+		// CDATA sections are reported as CDATA events, so that they are written as CDATA sections.
+		inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+		if (inputFactory.isPropertySupported(REPORT_CDATA_PROPERTY)) {
+			inputFactory.setProperty(REPORT_CDATA_PROPERTY, Boolean.TRUE);
+		}
+		inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		outputFactory = XMLOutputFactory.newInstance();
+	}
+
+	/**
+	 * Canonicalize the metadata XML files in the directory.
+	 * @param directory metadata directory.
+	 * @param parallelism parallelism of the fork-join pool.
+	 * @return number of files rewritten.
+	 */
+	public int canonicalize(File directory, int parallelism) {
+		Path root = directory.toPath();
+		List<Path> files;
+		try (Stream<Path> stream = Files.walk(root)) {
+			files = stream.filter(p -> p.getFileName().toString().endsWith(XML_EXTENSION) && Files.isRegularFile(p))
+					.filter(p -> isTarget(relativePath(root, p)))
+					.collect(Collectors.toList());
+		} catch (IOException e) {
+			throw new RuntimeException("Failed during file operation.", e);
+		}
+
+		AtomicInteger rewritten = new AtomicInteger();
+		Map<String, Exception> failures = new ConcurrentHashMap<>();
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+		try {
+			// the parallel stream is executed on the pool that submits it.
+			pool.submit(() -> files.parallelStream().forEach(p -> {
+				String relativePath = relativePath(root, p);
+				try {
+					if (canonicalize(p, getVolatileNames(relativePath))) {
+						rewritten.incrementAndGet();
+					}
+				} catch (IOException | XMLStreamException e) {
+					failures.put(relativePath, e);
+				}
+			})).get();
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while canonicalizing metadata.", e);
+
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Failed to canonicalize metadata.", e.getCause());
+
+		} finally {
+			pool.shutdownNow();
+		}
+
+		if (!failures.isEmpty()) {
+			String reported = failures.entrySet().stream().sorted(Map.Entry.comparingByKey()).limit(MAX_REPORTED_FAILURES)
+					.map(e -> e.getKey() + ": " + e.getValue().getMessage()).collect(Collectors.joining("\n"));
+			throw new RuntimeException(failures.size() + " files could not be canonicalized.\n" + reported);
+		}
+		return rewritten.get();
+	}
+
+	/**
+	 * Canonicalize a file.
+	 * @param file metadata XML file.
+	 * @param volatiles volatile names of the file.
+	 * @return true if the file is rewritten.
+	 * @throws IOException file operation error.
+	 * @throws XMLStreamException XML error.
+	 */
+	private boolean canonicalize(Path file, Set<String> volatiles) throws IOException, XMLStreamException {
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try {
+			try (InputStream input = new BufferedInputStream(Files.newInputStream(file));
+					OutputStream output = new BufferedOutputStream(Files.newOutputStream(temp))) {
+				XMLStreamReader reader = inputFactory.createXMLStreamReader(input);
+				XMLStreamWriter writer = outputFactory.createXMLStreamWriter(output, "UTF-8");
+				try {
+					write(reader, writer, volatiles);
+				} finally {
+					writer.close();
+					reader.close();
+				}
+			}
+
+			if (sameContent(file, temp)) {
+				return false;
+			}
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			return true;
+
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Write the canonical form.
+	 *
+	 * <p>
+	 * Elements that contain non-whitespace text or CDATA sections (mixed content) are not indented, and their whitespace is kept as is.
+	 * The text may be reported in several events, they are written in the same order.
+	 * </p>
+	 *
+	 * @param reader reader.
+	 * @param writer writer.
+	 * @param volatiles volatile names.
+	 * @throws XMLStreamException XML error.
+	 */
+	private void write(XMLStreamReader reader, XMLStreamWriter writer, Set<String> volatiles) throws XMLStreamException {
+		// state of the open elements.
+		Deque<ElementState> elements = new ArrayDeque<>();
+		// whitespace-only text that is written only if it is significant.
+		StringBuilder pendingWhitespace = new StringBuilder();
+		// depth in the volatile element. 0 if not in the volatile element.
+		int skipDepth = 0;
+
+		writer.writeStartDocument("UTF-8", "1.0");
+		while (reader.hasNext()) {
+			int event = reader.next();
+
+			if (0 < skipDepth) {
+				if (XMLStreamConstants.START_ELEMENT == event) {
+					skipDepth++;
+				} else if (XMLStreamConstants.END_ELEMENT == event) {
+					skipDepth--;
+				}
+				continue;
+			}
+
+			ElementState parent = elements.peek();
+			switch (event) {
+			case XMLStreamConstants.START_ELEMENT:
+				if (volatiles.contains(reader.getLocalName())) {
+					skipDepth = 1;
+					continue;
+				}
+				writeNode(writer, parent, pendingWhitespace, elements.size());
+				writeStartElement(reader, writer, volatiles);
+				elements.push(new ElementState());
+				break;
+
+			case XMLStreamConstants.END_ELEMENT:
+				ElementState element = elements.pop();
+				if (element.mixed || !element.hasChildren) {
+					writer.writeCharacters(pendingWhitespace.toString());
+				} else {
+					newLine(writer, elements.size());
+				}
+				pendingWhitespace.setLength(0);
+				writer.writeEndElement();
+				break;
+
+			case XMLStreamConstants.CDATA:
+				if (null == parent) {
+					break;
+				}
+				parent.mixed = true;
+				writer.writeCharacters(pendingWhitespace.toString());
+				pendingWhitespace.setLength(0);
+				writer.writeCData(reader.getText());
+				break;
+
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.SPACE:
+				if (null == parent) {
+					// whitespace outside the root element.
+					break;
+				}
+				if (reader.isWhiteSpace()) {
+					pendingWhitespace.append(reader.getText());
+				} else {
+					parent.mixed = true;
+					writer.writeCharacters(pendingWhitespace.toString());
+					pendingWhitespace.setLength(0);
+					writer.writeCharacters(reader.getText());
+				}
+				break;
+
+			case XMLStreamConstants.COMMENT:
+				writeNode(writer, parent, pendingWhitespace, elements.size());
+				writer.writeComment(reader.getText());
+				break;
+
+			case XMLStreamConstants.PROCESSING_INSTRUCTION:
+				writeNode(writer, parent, pendingWhitespace, elements.size());
+				writer.writeProcessingInstruction(reader.getPITarget(), reader.getPIData());
+				break;
+
+			case XMLStreamConstants.DTD:
+				newLine(writer, 0);
+				writer.writeDTD(reader.getText());
+				break;
+
+			default:
+				break;
+			}
+		}
+		writer.writeEndDocument();
+		writer.writeCharacters("\n");
+	}
+
+	/**
+	 * Write the whitespace before a child node. The child is indented unless the parent has mixed content.
+	 * @param writer writer.
+	 * @param parent parent element state. null if the node is outside the root element.
+	 * @param pendingWhitespace whitespace before the node.
+	 * @param depth depth of the node.
+	 * @throws XMLStreamException XML error.
+	 */
+	private static void writeNode(XMLStreamWriter writer, ElementState parent, StringBuilder pendingWhitespace, int depth) throws XMLStreamException {
+		if (null != parent && parent.mixed) {
+			writer.writeCharacters(pendingWhitespace.toString());
+		} else {
+			newLine(writer, depth);
+		}
+		pendingWhitespace.setLength(0);
+		if (null != parent) {
+			parent.hasChildren = true;
+		}
+	}
+
+	/**
+	 * Write the start element with the sorted namespaces and attributes.
+	 * @param reader reader.
+	 * @param writer writer.
+	 * @param volatiles volatile names.
+	 * @throws XMLStreamException XML error.
+	 */
+	private void writeStartElement(XMLStreamReader reader, XMLStreamWriter writer, Set<String> volatiles) throws XMLStreamException {
+		writer.writeStartElement(nonNull(reader.getPrefix()), reader.getLocalName(), nonNull(reader.getNamespaceURI()));
+
+		List<String[]> namespaces = new ArrayList<>();
+		for (int i = 0; i < reader.getNamespaceCount(); i++) {
+			namespaces.add(new String[] { nonNull(reader.getNamespacePrefix(i)), nonNull(reader.getNamespaceURI(i)) });
+		}
+		namespaces.sort(Comparator.comparing(n -> n[0]));
+		for (String[] namespace : namespaces) {
+			if (namespace[0].isEmpty()) {
+				writer.writeDefaultNamespace(namespace[1]);
+			} else {
+				writer.writeNamespace(namespace[0], namespace[1]);
+			}
+		}
+
+		List<String[]> attributes = new ArrayList<>();
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			if (volatiles.contains(reader.getAttributeLocalName(i))) {
+				continue;
+			}
+			attributes.add(new String[] { nonNull(reader.getAttributeNamespace(i)), reader.getAttributeLocalName(i),
+					nonNull(reader.getAttributePrefix(i)), reader.getAttributeValue(i) });
+		}
+		attributes.sort(Comparator.<String[], String> comparing(a -> a[0]).thenComparing(a -> a[1]));
+		for (String[] attribute : attributes) {
+			if (attribute[0].isEmpty()) {
+				writer.writeAttribute(attribute[1], attribute[3]);
+			} else {
+				writer.writeAttribute(attribute[2], attribute[0], attribute[1], attribute[3]);
+			}
+		}
+	}
+
+	/**
+	 * Get the volatile names of the file.
+	 * @param relativePath relative path of the file.
+	 * @return volatile names of the longest matching type.
+	 */
+	private Set<String> getVolatileNames(String relativePath) {
+		String matched = null;
+		for (String type : volatileNames.keySet()) {
+			if (!ALL_TYPES.equals(type) && matches(relativePath, type) && (null == matched || matched.length() < type.length())) {
+				matched = type;
+			}
+		}
+
+		if (null == matched) {
+			return volatileNames.getOrDefault(ALL_TYPES, Collections.emptySet());
+		}
+		return volatileNames.get(matched);
+	}
+
+	private boolean isTarget(String relativePath) {
+		return types.stream().anyMatch(t -> ALL_TYPES.equals(t) || matches(relativePath, t));
+	}
+
+	private static boolean matches(String relativePath, String type) {
+		return relativePath.startsWith(type + "/") || relativePath.equals(type);
+	}
+
+	private static void newLine(XMLStreamWriter writer, int depth) throws XMLStreamException {
+		StringBuilder indent = new StringBuilder("\n");
+		for (int i = 0; i < depth; i++) {
+			indent.append(INDENT);
+		}
+		writer.writeCharacters(indent.toString());
+	}
+
+	private static boolean sameContent(Path file1, Path file2) throws IOException {
+		if (Files.size(file1) != Files.size(file2)) {
+			return false;
+		}
+
+		try (InputStream input1 = new BufferedInputStream(Files.newInputStream(file1));
+				InputStream input2 = new BufferedInputStream(Files.newInputStream(file2))) {
+			int b;
+			while (-1 != (b = input1.read())) {
+				if (b != input2.read()) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private static String normalizeType(String type) {
+		String normalized = type.replace('\\', '/');
+		while (normalized.startsWith("/")) {
+			normalized = normalized.substring(1);
+		}
+		while (normalized.endsWith("/")) {
+			normalized = normalized.substring(0, normalized.length() - 1);
+		}
+		return normalized;
+	}
+
+	private static String nonNull(String value) {
+		return null == value ? "" : value;
+	}
+
+	private static String relativePath(Path root, Path file) {
+		return root.relativize(file).toString().replace(File.separatorChar, '/');
+	}
+
+	/**
+	 * state of the open element
+	 */
+	private static final class ElementState {
+		/** true if the element has child nodes */
+		private boolean hasChildren;
+		/** true if the element has non-whitespace text */
+		private boolean mixed;
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.metadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Optional;
+import org.gradle.process.JavaExecSpec;
+import org.iplass.mtp.dev.gradle.JavaBatchTask;
+import org.iplass.mtp.dev.gradle.history.TaskHistory;
+import org.iplass.mtp.dev.gradle.launcher.BatchLauncher;
+import org.iplass.mtp.dev.gradle.launcher.MetaDataVersionList;
+
+/**
+ * A task that detects drift of the local metadata files from the metadata in the RDB.
+ *
+ * <p>
+ * The paths and versions of the metadata of the tenant are listed in the batch JVM with {@link MetaDataVersionList} without exporting the metadata,
+ * and compared with the paths and versions of the local metadata files. The task reports the definitions added, changed and deleted locally.
+ * The service-config of the task must not compose the metadata store with the local metadata files, otherwise they are listed as the metadata in the RDB.
+ * </p>
+ *
+ * <p>
+ * The content hashes of the local metadata files are cached in a manifest with the size and last modified time of the files,
+ * and the paths and versions are cached by the content hash, so only the changed files are read. See {@link MetaDataVersionIndex}.
+ * A local change that keeps the version element is not detected.
+ * </p>
+ */
+public abstract class MetaDataDriftCheckTask extends JavaBatchTask {
+
+	/**
+	 * @return local metadata directory.
+	 */
+	@Input
+	abstract protected Property<String> getDirectory();
+
+	/**
+	 * @return if true, the task fails when drift is detected. Default value is true.
+	 */
+	@Input
+	@Optional
+	abstract protected Property<Boolean> getFailOnDrift();
+
+	/**
+	 * constructor.
+	 */
+	public MetaDataDriftCheckTask() {
+		setDescription("Detect drift of the local metadata files from the metadata in the RDB.");
+		// the metadata is listed from the database, so the task is executed even if the inputs are unchanged.
+		getOutputs().upToDateWhen(t -> false);
+	}
+
+	@Override
+	public void doTask() {
+		// the local metadata files must not be listed as the metadata in the RDB.
+		if (!getServiceConfig().isPresent()) {
+			throw new GradleException("Set serviceConfig of " + getName() + " to the service-config whose metadata store is not composed with the local metadata files.");
+		}
+
+		File directory = getProject().file(getDirectory().get());
+		if (!directory.isDirectory()) {
+			throw new GradleException("The metadata directory '" + directory.getAbsolutePath() + "' does not exist.");
+		}
+
+		super.doTask();
+		Map<String, String> rdb = readVersions(getVersionFile());
+		recordHistory(TaskHistory.METADATA_VOLUME, rdb.size());
+
+		// scan the local directory incrementally with the previous manifest and index.
+		File manifestFile = new File(getBuildDirectory("iplass/metadata"), getName() + "_manifest.properties");
+		File indexFile = new File(getBuildDirectory("iplass/metadata"), getName() + "_versions.properties");
+		Map<String, String> local;
+		try {
+			MetaDataManifest manifest = MetaDataManifest.scan(directory, MetaDataManifest.load(manifestFile));
+			manifest.save(manifestFile);
+			MetaDataVersionIndex index = MetaDataVersionIndex.index(directory, manifest, MetaDataVersionIndex.load(indexFile));
+			index.save(indexFile);
+			local = index.getVersions(manifest);
+		} catch (RuntimeException e) {
+			throw new GradleException(e.getMessage(), e);
+		}
+
+		compare(rdb, local);
+	}
+
+	@Override
+	protected void configure(JavaExecSpec spec) {
+		File launcherDirectory = getBuildDirectory("iplass/launcher");
+		BatchLauncher.extract(launcherDirectory);
+
+		spec.getMainClass().set(MetaDataVersionList.class.getName());
+		spec.args(String.valueOf(getPluginExtension().getTenantId().get()), "/", getVersionFile().getAbsolutePath());
+		spec.classpath(launcherDirectory);
+	}
+
+	/**
+	 * Compare the metadata in the RDB with the local metadata, and report the drift.
+	 * @param rdb metadata path and version in the RDB.
+	 * @param local metadata path and version of the local metadata files.
+	 */
+	private void compare(Map<String, String> rdb, Map<String, String> local) {
+		List<String> added = new ArrayList<>();
+		List<String> changed = new ArrayList<>();
+		List<String> deleted = new ArrayList<>();
+
+		TreeSet<String> paths = new TreeSet<>(rdb.keySet());
+		paths.addAll(local.keySet());
+		for (String path : paths) {
+			String before = rdb.get(path);
+			String after = local.get(path);
+			if (null == before) {
+				added.add(path);
+			} else if (null == after) {
+				deleted.add(path);
+			} else if (!before.equals(after)) {
+				changed.add(path + " (version " + after + ", RDB " + before + ")");
+			}
+		}
+
+		added.forEach(p -> getLogger().lifecycle("added   : {}", p));
+		changed.forEach(p -> getLogger().lifecycle("changed : {}", p));
+		deleted.forEach(p -> getLogger().lifecycle("deleted : {}", p));
+		getLogger().lifecycle("{} definitions checked. added = {}, changed = {}, deleted = {}.", local.size(), added.size(), changed.size(), deleted.size());
+
+		boolean drift = !added.isEmpty() || !changed.isEmpty() || !deleted.isEmpty();
+		if (drift && getFailOnDrift().getOrElse(Boolean.TRUE)) {
+			throw new GradleException("The local metadata files have drifted from the metadata of tenant " + getPluginExtension().getTenantId().get() + ".");
+		}
+	}
+
+	/**
+	 * Read the output file of {@link MetaDataVersionList}.
+	 * @param file output file.
+	 * @return metadata path and version.
+	 */
+	private static Map<String, String> readVersions(File file) {
+		Map<String, String> versions = new TreeMap<>();
+		try {
+			for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+				int separator = line.indexOf('\t');
+				if (0 < separator) {
+					versions.put(line.substring(0, separator), line.substring(separator + 1));
+				}
+			}
+		} catch (IOException e) {
+			throw new GradleException("Unable to read file '" + file.getAbsolutePath() + "'.", e);
+		}
+		return versions;
+	}
+
+	private File getVersionFile() {
+		// /temp/dir/taskname_versions.txt
+		return new File(getTemporaryDir(), getName() + "_versions.txt");
+	}
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.metadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.iplass.mtp.dev.gradle.PropertyFileUtil;
+
+/**
+ * Content hash manifest of the metadata directory.
+ *
+ * <p>
+ * Holds the size, last modified time and SHA-256 hash of each file, keyed by the path relative to the directory.
+ * When the directory is scanned with the previous manifest, files whose size and last modified time are unchanged reuse the previous hash,
+ * so only the changed files are read.
+ * </p>
+ */
+public class MetaDataManifest {
+	/** hash algorithm */
+	private static final String HASH_ALGORITHM = "SHA-256";
+	/** buffer size for reading files */
+	private static final int BUFFER_SIZE = 8192;
+
+	/** relative path and entry */
+	private final Map<String, Entry> entries;
+
+	private MetaDataManifest(Map<String, Entry> entries) {
+		this.entries = entries;
+	}
+
+	/**
+	 * @return empty manifest. used to scan a directory without the previous manifest.
+	 */
+	public static MetaDataManifest empty() {
+		return new MetaDataManifest(new TreeMap<>());
+	}
+
+	/**
+	 * Load the manifest file.
+	 *
+	 * <p>
+	 * If the file does not exist, an empty manifest is returned.
+	 * </p>
+	 *
+	 * @param file manifest file.
+	 * @return manifest.
+	 */
+	public static MetaDataManifest load(File file) {
+		Map<String, Entry> entries = new TreeMap<>();
+		if (file.exists()) {
+			Properties props = PropertyFileUtil.load(file);
+			props.stringPropertyNames().forEach(k -> entries.put(k, Entry.parse(props.getProperty(k))));
+		}
+		return new MetaDataManifest(entries);
+	}
+
+	/**
+	 * Scan the directory and create the manifest.
+	 *
+	 * <p>
+	 * Files whose size and last modified time are the same as the previous manifest reuse the previous hash.
+	 * The other files are hashed in parallel.
+	 * </p>
+	 *
+	 * @param directory metadata directory.
+	 * @param previous previous manifest.
+	 * @return manifest of the current directory.
+	 */
+	public static MetaDataManifest scan(File directory, MetaDataManifest previous) {
+		Path root = directory.toPath();
+		List<Path> files;
+		try (Stream<Path> stream = Files.walk(root)) {
+			files = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+		} catch (IOException e) {
+			throw new RuntimeException("Failed during file operation.", e);
+		}
+
+		Map<String, Entry> entries = files.parallelStream().collect(Collectors.toConcurrentMap(
+				p -> relativePath(root, p),
+				p -> {
+					File file = p.toFile();
+					Entry before = previous.entries.get(relativePath(root, p));
+					if (null != before && before.size == file.length() && before.lastModified == file.lastModified()) {
+						return before;
+					}
+					return new Entry(file.length(), file.lastModified(), hash(p));
+				}));
+
+		return new MetaDataManifest(new TreeMap<>(entries));
+	}
+
+	/**
+	 * Save the manifest file.
+	 *
+	 * <p>
+	 * The same manifest is saved as the same content.
+	 * </p>
+	 *
+	 * @param file manifest file.
+	 */
+	public void save(File file) {
+		file.getParentFile().mkdirs();
+		Map<String, String> values = new TreeMap<>();
+		entries.forEach((k, v) -> values.put(k, v.toString()));
+		PropertyFileUtil.saveSorted(file, values);
+	}
+
+	/**
+	 * @return relative path and content hash.
+	 */
+	public Map<String, String> getHashes() {
+		Map<String, String> hashes = new TreeMap<>();
+		entries.forEach((k, v) -> hashes.put(k, v.hash));
+		return Collections.unmodifiableMap(hashes);
+	}
+
+	/**
+	 * Get the fingerprint of the directory.
+	 *
+	 * <p>
+	 * The fingerprint is the hash of the relative paths and content hashes of all files.
+	 * It changes when any file is added, changed or deleted.
+	 * </p>
+	 *
+	 * @return fingerprint of the directory.
+	 */
+	public String getFingerprint() {
+		try {
+			MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+			entries.forEach((k, v) -> digest.update((k + "=" + v.hash + "\n").getBytes(StandardCharsets.UTF_8)));
+			return toHex(digest.digest());
+
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("Hash algorithm " + HASH_ALGORITHM + " is not available.", e);
+		}
+	}
+
+	/**
+	 * @return number of files.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	private static String relativePath(Path root, Path file) {
+		return root.relativize(file).toString().replace(File.separatorChar, '/');
+	}
+
+	private static String hash(Path file) {
+		try (InputStream input = Files.newInputStream(file)) {
+			MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int length;
+			while (-1 != (length = input.read(buffer))) {
+				digest.update(buffer, 0, length);
+			}
+
+			return toHex(digest.digest());
+
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("Hash algorithm " + HASH_ALGORITHM + " is not available.", e);
+
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to read file '" + file + "'.", e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder();
+		for (byte b : bytes) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * manifest entry
+	 */
+	private static final class Entry {
+		/** file size */
+		private final long size;
+		/** last modified time */
+		private final long lastModified;
+		/** content hash */
+		private final String hash;
+
+		private Entry(long size, long lastModified, String hash) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.hash = hash;
+		}
+
+		/**
+		 * @param value "size,lastModified,hash"
+		 * @return entry
+		 */
+		private static Entry parse(String value) {
+			String[] values = value.split(",", 3);
+			return new Entry(Long.parseLong(values[0]), Long.parseLong(values[1]), values[2]);
+		}
+
+		@Override
+		public String toString() {
+			return size + "," + lastModified + "," + hash;
+		}
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.metadata;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.attributes.Usage;
+
+/**
+ * Plugin for local metadata files.
+ */
+public class MetaDataPlugin implements Plugin<Project> {
+	/** metaDriftCheck task name */
+	public static final String META_DRIFT_CHECK_TASK_NAME = "metaDriftCheck";
+	/** metaBundleExtract task name */
+	public static final String META_BUNDLE_EXTRACT_TASK_NAME = "metaBundleExtract";
+	/** configuration name to resolve the metadata bundle */
+	public static final String META_DATA_BUNDLE_CONFIGURATION_NAME = "iplassMetaDataBundle";
+
+	@Override
+	public void apply(Project project) {
+		// register tasks.
+		project.getTasks().register(META_DRIFT_CHECK_TASK_NAME, MetaDataDriftCheckTask.class);
+
+		// the bundle published by another project is resolved with the usage attribute.
+		Configuration bundle = project.getConfigurations().create(META_DATA_BUNDLE_CONFIGURATION_NAME, c -> {
+			c.setDescription("iPLAss metadata bundle to extract.");
+			c.setCanBeConsumed(false);
+			c.setCanBeResolved(true);
+			c.getAttributes().attribute(Usage.USAGE_ATTRIBUTE, project.getObjects().named(Usage.class, MetaDataBundle.USAGE));
+		});
+		project.getTasks().register(META_BUNDLE_EXTRACT_TASK_NAME, MetaDataBundleExtractTask.class, t -> t.getBundle().from(bundle));
+	}
+}
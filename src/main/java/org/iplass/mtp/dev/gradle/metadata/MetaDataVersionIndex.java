@@ -0,0 +1,181 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.metadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.iplass.mtp.dev.gradle.PropertyFileUtil;
+
+/**
+ * Metadata path and version index of the local metadata files.
+ *
+ * <p>
+ * The metadata path and version are read from the path and version elements of the metaDataEntry files, and the other files are ignored.
+ * The index is keyed by the content hash of the {@link MetaDataManifest}, so only the files whose hash is not in the previous index are read,
+ * and each of them only up to the version element.
+ * </p>
+ */
+public class MetaDataVersionIndex {
+	/** root element of the metadata file */
+	private static final String ENTRY_ELEMENT = "metaDataEntry";
+	/** value of the file that is not a metadata file */
+	private static final String NOT_METADATA = "";
+
+	/** content hash and "path\tversion" */
+	private final Map<String, String> index;
+
+	/**
+	 * constructor
+	 * @param index content hash and "path\tversion".
+	 */
+	private MetaDataVersionIndex(Map<String, String> index) {
+		this.index = index;
+	}
+
+	/**
+	 * Load the index file.
+	 *
+	 * <p>
+	 * If the file does not exist, an empty index is returned.
+	 * </p>
+	 *
+	 * @param file index file.
+	 * @return index.
+	 */
+	public static MetaDataVersionIndex load(File file) {
+		Map<String, String> index = new TreeMap<>();
+		if (file.exists()) {
+			Properties props = PropertyFileUtil.load(file);
+			props.stringPropertyNames().forEach(k -> index.put(k, props.getProperty(k)));
+		}
+		return new MetaDataVersionIndex(index);
+	}
+
+	/**
+	 * Index the files of the manifest.
+	 *
+	 * <p>
+	 * Files whose content hash is in the previous index reuse the previous path and version. The other files are read in parallel.
+	 * </p>
+	 *
+	 * @param directory metadata directory.
+	 * @param manifest manifest of the directory.
+	 * @param previous previous index.
+	 * @return index of the current files.
+	 */
+	public static MetaDataVersionIndex index(File directory, MetaDataManifest manifest, MetaDataVersionIndex previous) {
+		XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+
+		Map<String, String> index = new ConcurrentHashMap<>();
+		manifest.getHashes().entrySet().parallelStream().forEach(e -> {
+			String value = previous.index.get(e.getValue());
+			index.put(e.getValue(), null != value ? value : read(inputFactory, new File(directory, e.getKey())));
+		});
+		return new MetaDataVersionIndex(new TreeMap<>(index));
+	}
+
+	/**
+	 * Save the index file.
+	 * @param file index file.
+	 */
+	public void save(File file) {
+		file.getParentFile().mkdirs();
+		PropertyFileUtil.saveSorted(file, index);
+	}
+
+	/**
+	 * Get the metadata paths and versions of the files of the manifest.
+	 * @param manifest manifest of the directory.
+	 * @return metadata path and version.
+	 * @throws RuntimeException if a metadata path is defined in multiple files.
+	 */
+	public Map<String, String> getVersions(MetaDataManifest manifest) {
+		Map<String, String> versions = new TreeMap<>();
+		Map<String, String> files = new TreeMap<>();
+		manifest.getHashes().forEach((file, hash) -> {
+			String value = index.getOrDefault(hash, NOT_METADATA);
+			if (NOT_METADATA.equals(value)) {
+				return;
+			}
+
+			int separator = value.indexOf('\t');
+			String path = value.substring(0, separator);
+			String other = files.put(path, file);
+			if (null != other) {
+				throw new RuntimeException("The metadata path '" + path + "' is defined in both '" + other + "' and '" + file + "'.");
+			}
+			versions.put(path, value.substring(separator + 1));
+		});
+		return versions;
+	}
+
+	/**
+	 * Read the path and version of the metadata file.
+	 * @param inputFactory StAX input factory.
+	 * @param file file.
+	 * @return "path\tversion", or empty if the file is not a metadata file.
+	 */
+	private static String read(XMLInputFactory inputFactory, File file) {
+		if (!file.getName().endsWith(".xml")) {
+			return NOT_METADATA;
+		}
+
+		try (InputStream input = Files.newInputStream(file.toPath())) {
+			XMLStreamReader reader = inputFactory.createXMLStreamReader(input);
+			try {
+				reader.nextTag();
+				if (!ENTRY_ELEMENT.equals(reader.getLocalName())) {
+					return NOT_METADATA;
+				}
+
+				String path = null;
+				String version = null;
+				// the path and version are the children of the root element before the metaData element.
+				while (reader.hasNext() && (null == path || null == version)) {
+					if (XMLStreamConstants.START_ELEMENT == reader.next()) {
+						if ("path".equals(reader.getLocalName())) {
+							path = reader.getElementText().trim();
+						} else if ("version".equals(reader.getLocalName())) {
+							version = reader.getElementText().trim();
+						} else {
+							break;
+						}
+					}
+				}
+				return null != path ? path + "\t" + (null != version ? version : "") : NOT_METADATA;
+
+			} finally {
+				reader.close();
+			}
+		} catch (IOException | XMLStreamException e) {
+			throw new RuntimeException("Unable to read file '" + file.getAbsolutePath() + "'.", e);
+		}
+	}
+}
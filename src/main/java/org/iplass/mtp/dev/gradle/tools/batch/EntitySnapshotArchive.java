@@ -0,0 +1,234 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.tools.batch;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.gradle.api.GradleException;
+import org.iplass.mtp.dev.gradle.PropertyFileUtil;
+import org.iplass.mtp.dev.gradle.metadata.MetaDataBundle;
+
+/**
+ * Entity data snapshot archive.
+ *
+ * <p>
+ * The archive is a zip file that stores each entity data file as a compressed entry (chunk), and an index entry.
+ * Each chunk can be read without reading the other chunks through the zip central directory, so a partial restore reads only the required chunks.
+ * </p>
+ *
+ * <ul>
+ * <li>index.properties - entity.n = entity name, file.n = entry name, and the properties specified when creating.</li>
+ * <li>data/${entity data file} - entity data file.</li>
+ * </ul>
+ */
+public class EntitySnapshotArchive {
+	/** index entry name */
+	private static final String INDEX_ENTRY = "index.properties";
+	/** data entry directory */
+	private static final String DATA_DIRECTORY = "data/";
+	/** hash algorithm of the key */
+	private static final String HASH_ALGORITHM = "SHA-256";
+	/** length of the key */
+	private static final int KEY_LENGTH = 32;
+
+	/**
+	 * private constructor.
+	 */
+	private EntitySnapshotArchive() {
+	}
+
+	/**
+	 * Get the key of the archive.
+	 *
+	 * <p>
+	 * The key is the hash of the metadata fingerprint, the tenant id and the entity names,
+	 * so a snapshot of another tenant or another set of entities is not used.
+	 * The order of the entity names does not affect the key.
+	 * </p>
+	 *
+	 * @param fingerprint fingerprint of the metadata directory.
+	 * @param tenantId tenant id.
+	 * @param entities entity names. If empty, the snapshot of all entities of the tenant.
+	 * @return key of the archive.
+	 */
+	public static String key(String fingerprint, String tenantId, Collection<String> entities) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+			digest.update(("fingerprint=" + fingerprint + "\n").getBytes(StandardCharsets.UTF_8));
+			digest.update(("tenantId=" + tenantId + "\n").getBytes(StandardCharsets.UTF_8));
+			digest.update(("entities=" + String.join(",", new TreeSet<>(entities)) + "\n").getBytes(StandardCharsets.UTF_8));
+
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest.digest()) {
+				hex.append(String.format("%02x", b));
+			}
+			return hex.substring(0, KEY_LENGTH);
+
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("Hash algorithm " + HASH_ALGORITHM + " is not available.", e);
+		}
+	}
+
+	/**
+	 * Get the index properties of the archive.
+	 * @param archive archive file.
+	 * @return index properties. entity.n and file.n are included.
+	 */
+	public static Properties getIndex(File archive) {
+		try (ZipFile zip = new ZipFile(archive)) {
+			return readIndex(zip);
+
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to read file '" + archive.getAbsolutePath() + "'.", e);
+		}
+	}
+
+	/**
+	 * Create the archive.
+	 *
+	 * <p>
+	 * The archive is written to a temporary file and moved atomically, so an interrupted creation does not leave a broken archive.
+	 * </p>
+	 *
+	 * @param archive archive file.
+	 * @param files entity name and data file.
+	 * @param info additional index properties.
+	 */
+	public static void create(File archive, Map<String, File> files, Map<String, String> info) {
+		archive.getParentFile().mkdirs();
+		File temp = new File(archive.getParentFile(), archive.getName() + ".tmp");
+
+		try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.setLevel(Deflater.BEST_COMPRESSION);
+
+			Properties index = new Properties();
+			index.putAll(info);
+			int i = 0;
+			for (Map.Entry<String, File> file : files.entrySet()) {
+				String entryName = DATA_DIRECTORY + file.getValue().getName();
+				index.setProperty("entity." + i, file.getKey());
+				index.setProperty("file." + i, entryName);
+				i++;
+
+				out.putNextEntry(new ZipEntry(entryName));
+				Files.copy(file.getValue().toPath(), out);
+				out.closeEntry();
+			}
+
+			ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+			index.store(indexBytes, null);
+			out.putNextEntry(new ZipEntry(INDEX_ENTRY));
+			out.write(indexBytes.toByteArray());
+			out.closeEntry();
+
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to create file '" + archive.getAbsolutePath() + "'.", e);
+		}
+
+		try {
+			Files.move(temp.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed during file operation.", e);
+		}
+	}
+
+	/**
+	 * Get the entity names in the archive.
+	 * @param archive archive file.
+	 * @return entity names.
+	 */
+	public static List<String> getEntities(File archive) {
+		Properties index = getIndex(archive);
+		List<String> entities = new ArrayList<>();
+		for (int i = 0; null != index.getProperty("entity." + i); i++) {
+			entities.add(index.getProperty("entity." + i));
+		}
+		return entities;
+	}
+
+	/**
+	 * Extract the entity data files from the archive.
+	 * @param archive archive file.
+	 * @param directory destination directory.
+	 * @param entities entity names to extract. If empty, all entities are extracted.
+	 * @return extracted entity names.
+	 */
+	public static List<String> extract(File archive, File directory, Collection<String> entities) {
+		directory.mkdirs();
+
+		try (ZipFile zip = new ZipFile(archive)) {
+			Properties index = readIndex(zip);
+			List<String> extracted = new ArrayList<>();
+			for (int i = 0; null != index.getProperty("entity." + i); i++) {
+				String entity = index.getProperty("entity." + i);
+				if (!entities.isEmpty() && !entities.contains(entity)) {
+					continue;
+				}
+
+				// read only the entry of the entity.
+				String name = index.getProperty("file." + i);
+				if (null == name || !name.startsWith(DATA_DIRECTORY) || !MetaDataBundle.isSafePath(name.substring(DATA_DIRECTORY.length()))) {
+					throw new GradleException("The entry '" + name + "' of entity " + entity + " in the archive '" + archive.getAbsolutePath()
+							+ "' is outside the destination directory.");
+				}
+				ZipEntry entry = zip.getEntry(name);
+				if (null == entry) {
+					throw new GradleException("The entry '" + name + "' of entity " + entity + " does not exist in the archive '" + archive.getAbsolutePath() + "'.");
+				}
+				File file = new File(directory, name.substring(DATA_DIRECTORY.length()));
+				try (InputStream input = zip.getInputStream(entry)) {
+					Files.copy(input, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+				extracted.add(entity);
+			}
+			return extracted;
+
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to read file '" + archive.getAbsolutePath() + "'.", e);
+		}
+	}
+
+	private static Properties readIndex(ZipFile zip) throws IOException {
+		ZipEntry entry = zip.getEntry(INDEX_ENTRY);
+		if (null == entry) {
+			throw new IOException("The index entry does not exist in the archive.");
+		}
+
+		try (InputStream input = zip.getInputStream(entry)) {
+			return PropertyFileUtil.load(input);
+		}
+	}
+}
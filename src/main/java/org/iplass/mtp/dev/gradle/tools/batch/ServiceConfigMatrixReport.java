@@ -0,0 +1,289 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.tools.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.iplass.mtp.dev.gradle.PropertyFileUtil;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Report of the service-config matrix.
+ *
+ * <p>
+ * Reads the results written by the service-config matrix, and reports the errors, the differences between the service-configs and the effective values.
+ * The effective values (output of the viewer) are compared as XML. Each element is identified by the path of the element names and
+ * the "name" attribute, the "interface" child element or the index of the element. If the output is not XML, the output lines are compared.
+ * </p>
+ */
+public class ServiceConfigMatrixReport {
+	/** value of the missing key */
+	private static final String MISSING = "(none)";
+
+	/** service-configs */
+	private final List<String> configs;
+	/** outputs of the service-configs */
+	private final List<String> outputs = new ArrayList<>();
+	/** errors of the service-configs. null if succeeded */
+	private final List<String> errors = new ArrayList<>();
+	/** key and values of the differences */
+	private final Map<String, List<String>> differences = new LinkedHashMap<>();
+
+	/**
+	 * constructor
+	 * @param configs service-configs.
+	 * @param outputDirectory output directory of the service-config matrix.
+	 */
+	public ServiceConfigMatrixReport(List<String> configs, File outputDirectory) {
+		this.configs = configs;
+
+		List<Map<String, String>> values = new ArrayList<>();
+		for (int i = 0; i < configs.size(); i++) {
+			File outputFile = new File(outputDirectory, "config_" + i + ".out");
+			File resultFile = new File(outputDirectory, "config_" + i + ".properties");
+
+			String output = outputFile.exists() ? read(outputFile) : "";
+			Properties result = resultFile.exists() ? PropertyFileUtil.load(resultFile) : new Properties();
+			outputs.add(output);
+
+			String error = null;
+			if (!resultFile.exists()) {
+				error = "No result.";
+			} else if (null != result.getProperty("error")) {
+				error = result.getProperty("error");
+			} else if (!"0".equals(result.getProperty("status"))) {
+				error = "exit status " + result.getProperty("status");
+			}
+			errors.add(error);
+			values.add(null == error ? flatten(output) : Collections.emptyMap());
+		}
+
+		compare(values);
+	}
+
+	/**
+	 * @return number of the service-configs that failed.
+	 */
+	public int getErrorCount() {
+		return (int) errors.stream().filter(Objects::nonNull).count();
+	}
+
+	/**
+	 * @return number of the keys whose values differ between the service-configs.
+	 */
+	public int getDifferenceCount() {
+		return differences.size();
+	}
+
+	/**
+	 * Write the report.
+	 * @param file report file.
+	 */
+	public void write(File file) {
+		file.getParentFile().mkdirs();
+		try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+			writer.println("service-config matrix");
+			for (int i = 0; i < configs.size(); i++) {
+				writer.println(label(i) + " : " + (null == errors.get(i) ? "OK" : "ERROR " + errors.get(i)));
+			}
+
+			writer.println();
+			writer.println("== differences (" + differences.size() + ") ==");
+			differences.forEach((k, v) -> {
+				writer.println(k);
+				for (int i = 0; i < v.size(); i++) {
+					if (null == errors.get(i)) {
+						writer.println("  [" + (i + 1) + "] " + v.get(i));
+					}
+				}
+			});
+
+			writer.println();
+			writer.println("== merge errors (" + getErrorCount() + ") ==");
+			for (int i = 0; i < configs.size(); i++) {
+				if (null != errors.get(i)) {
+					writer.println("--- " + label(i) + " ---");
+					writer.println(outputs.get(i));
+				}
+			}
+
+			writer.println();
+			writer.println("== effective values ==");
+			for (int i = 0; i < configs.size(); i++) {
+				if (null == errors.get(i)) {
+					writer.println("--- " + label(i) + " ---");
+					writer.println(outputs.get(i));
+				}
+			}
+
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to create file '" + file.getAbsolutePath() + "'.", e);
+		}
+	}
+
+	/**
+	 * Compare the values of the succeeded service-configs.
+	 * @param values flattened values of each service-config.
+	 */
+	private void compare(List<Map<String, String>> values) {
+		Set<String> keys = new LinkedHashSet<>();
+		for (int i = 0; i < values.size(); i++) {
+			if (null == errors.get(i)) {
+				keys.addAll(values.get(i).keySet());
+			}
+		}
+
+		for (String key : keys) {
+			List<String> keyValues = new ArrayList<>();
+			Set<String> distinct = new LinkedHashSet<>();
+			for (int i = 0; i < values.size(); i++) {
+				String value = values.get(i).getOrDefault(key, MISSING);
+				keyValues.add(value);
+				if (null == errors.get(i)) {
+					distinct.add(value);
+				}
+			}
+
+			if (1 < distinct.size()) {
+				differences.put(key, keyValues);
+			}
+		}
+	}
+
+	/**
+	 * Flatten the output to key and value.
+	 * @param output output of the viewer.
+	 * @return key and value.
+	 */
+	static Map<String, String> flatten(String output) {
+		int start = output.indexOf("<?xml");
+		if (-1 == start) {
+			start = output.indexOf('<');
+		}
+		int end = output.lastIndexOf('>');
+
+		if (-1 != start && start < end) {
+			try {
+				DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+				factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+				factory.setExpandEntityReferences(false);
+				DocumentBuilder builder = factory.newDocumentBuilder();
+				// do not print parse errors to stderr.
+				builder.setErrorHandler(new DefaultHandler());
+				Element root = builder.parse(new InputSource(new StringReader(output.substring(start, end + 1)))).getDocumentElement();
+
+				Map<String, String> values = new LinkedHashMap<>();
+				flatten(root, "/" + root.getTagName(), values);
+				return values;
+
+			} catch (Exception e) {
+				// not XML. compare lines.
+			}
+		}
+
+		Map<String, String> values = new LinkedHashMap<>();
+		for (String line : output.split("\\r?\\n")) {
+			if (!line.trim().isEmpty()) {
+				values.put(line.trim(), "present");
+			}
+		}
+		return values;
+	}
+
+	private static void flatten(Element element, String path, Map<String, String> values) {
+		NamedNodeMap attributes = element.getAttributes();
+		for (int i = 0; i < attributes.getLength(); i++) {
+			put(values, path + "@" + attributes.item(i).getNodeName(), attributes.item(i).getNodeValue());
+		}
+
+		Map<String, Integer> indexes = new HashMap<>();
+		boolean hasChildren = false;
+		NodeList children = element.getChildNodes();
+		for (int i = 0; i < children.getLength(); i++) {
+			if (Node.ELEMENT_NODE != children.item(i).getNodeType()) {
+				continue;
+			}
+
+			hasChildren = true;
+			Element child = (Element) children.item(i);
+			int index = indexes.merge(child.getTagName(), 1, Integer::sum);
+			flatten(child, path + "/" + child.getTagName() + "[" + identity(child, index) + "]", values);
+		}
+
+		String text = element.getTextContent().trim();
+		if (!hasChildren && !text.isEmpty()) {
+			put(values, path, text);
+		}
+	}
+
+	private static String identity(Element element, int index) {
+		if (element.hasAttribute("name")) {
+			return element.getAttribute("name");
+		}
+
+		NodeList children = element.getChildNodes();
+		for (int i = 0; i < children.getLength(); i++) {
+			if (Node.ELEMENT_NODE == children.item(i).getNodeType() && "interface".equals(((Element) children.item(i)).getTagName())) {
+				return children.item(i).getTextContent().trim();
+			}
+		}
+		return String.valueOf(index);
+	}
+
+	private static void put(Map<String, String> values, String key, String value) {
+		String uniqueKey = key;
+		for (int i = 2; values.containsKey(uniqueKey); i++) {
+			uniqueKey = key + "#" + i;
+		}
+		values.put(uniqueKey, value);
+	}
+
+	private String label(int index) {
+		return "[" + (index + 1) + "] " + configs.get(index);
+	}
+
+	private static String read(File file) {
+		try {
+			return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to read file '" + file.getAbsolutePath() + "'.", e);
+		}
+	}
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.tools.batch;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.iplass.mtp.dev.gradle.PropertyFileUtil;
+import org.iplass.mtp.dev.gradle.TaskCheckpoint;
+import org.iplass.mtp.dev.gradle.history.TaskHistory;
+
+/**
+ * A task that exports or imports entity data with the tools batch.
+ *
+ * <p>
+ * The target entities are divided into chunks of a fixed number of entities (the import uses a chunk per entity), and a batch is executed for each chunk.
+ * Chunks are executed in parallel up to the specified parallelism, and the completed entities are recorded in the checkpoint file
+ * each time a chunk completes. If the task is interrupted, the next execution resumes from the entities that have not been completed.
+ * The records of an entity are not divided, so an entity interrupted in the middle is processed again from the beginning.
+ * The checkpoint is scoped by the tenant id and the directory, and is deleted when all entities are completed.
+ * </p>
+ *
+ * <p>
+ * If any of the following keywords are present in the property value, the value is replaced.
+ * </p>
+ *
+ * <ul>
+ * <li>{tenantId} - extension tenantId</li>
+ * <li>{directory} - directory of task properties</li>
+ * <li>{entityName} - entity names of the chunk (comma-separated)</li>
+ * <li>{file} - data file of the chunk (import only)</li>
+ * </ul>
+ */
+public abstract class ToolsBatchEntityDataTask extends ToolsBatchTask<ToolsBatchEntityDataTaskConfig> {
+	/** metadata path prefix of the entity definitions */
+	private static final String ENTITY_PATH_PREFIX = "/entity/";
+
+	/**
+	 * get target entity names.
+	 *
+	 * <p>
+	 * If not specified, the export targets the entities defined in the tenant,
+	 * and the import targets the entities of the data files that exist in the directory.
+	 * </p>
+	 *
+	 * @return target entity names.
+	 */
+	@Input
+	@Optional
+	abstract protected ListProperty<String> getEntities();
+
+	/**
+	 * @return directory of entity data files.
+	 */
+	@Input
+	@Optional
+	abstract protected Property<String> getDirectory();
+
+	/**
+	 * @return number of entities processed in a batch execution. Default value is 1. The import allows only 1.
+	 */
+	@Input
+	@Optional
+	abstract protected Property<Integer> getChunkSize();
+
+	/**
+	 * @return number of batches executed in parallel. Default value is 1.
+	 */
+	@Input
+	@Optional
+	abstract protected Property<Integer> getParallelism();
+
+	/**
+	 * @return if true, resume from the checkpoint. Default value is true.
+	 */
+	@Input
+	@Optional
+	abstract protected Property<Boolean> getResume();
+
+	@Override
+	public void doTask() {
+		doTask(getTargets());
+	}
+
+	/**
+	 * Execute the batch for the target entities.
+	 * @param targets entity name and data file. See {@link #getTargets()}.
+	 */
+	protected void doTask(Map<String, File> targets) {
+		try {
+			measurePhase("beforeTask", this::beforeTask);
+			measurePhase("chunks", () -> executeChunks(targets));
+
+		} finally {
+			measurePhase("afterTask", this::afterTask);
+		}
+	}
+
+	@Override
+	protected ToolsBatchEntityDataTaskConfig createToolsBatchConfig(Properties props) {
+		return new ToolsBatchEntityDataTaskConfig(props);
+	}
+
+	/**
+	 * Execute the batch for each chunk.
+	 * @param targets entity name and data file.
+	 */
+	private void executeChunks(Map<String, File> targets) {
+		TaskCheckpoint checkpoint = new TaskCheckpoint(getCheckpointFile(), getCheckpointScope());
+		if (!getResume().getOrElse(Boolean.TRUE)) {
+			checkpoint.clear();
+		}
+
+		List<String> remaining = targets.keySet().stream().filter(e -> !checkpoint.isCompleted(e)).collect(Collectors.toList());
+		recordHistory(TaskHistory.SOURCE_COUNT, targets.size());
+		getLogger().lifecycle("{} entities, {} completed, {} remaining.", targets.size(), targets.size() - remaining.size(), remaining.size());
+
+		int chunkSize = Math.max(1, getChunkSize().getOrElse(1));
+		if (!getTaskConfig().isExport() && 1 < chunkSize) {
+			// the import tool reads a data file per execution.
+			throw new GradleException("chunkSize " + chunkSize + " is not supported by " + getName() + ". The import executes a batch per data file.");
+		}
+
+		List<List<String>> chunks = chunk(remaining, chunkSize);
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, getParallelism().getOrElse(1)));
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < chunks.size(); i++) {
+				int index = i;
+				List<String> chunk = chunks.get(i);
+				futures.add(executor.submit(() -> {
+					// Chunks that have not started are not executed after a failure.
+					if (null != failure.get()) {
+						return;
+					}
+
+					try {
+						executeChunk(index, chunk, targets);
+						chunk.forEach(checkpoint::complete);
+						getLogger().lifecycle("chunk {}/{} completed. entities = {}", index + 1, chunks.size(), chunk);
+
+					} catch (RuntimeException e) {
+						failure.compareAndSet(null, e);
+					}
+				}));
+			}
+
+			for (Future<?> future : futures) {
+				future.get();
+			}
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new GradleException("Interrupted while waiting for the chunk to complete.", e);
+
+		} catch (ExecutionException e) {
+			throw new GradleException("Failed to execute the chunk.", e.getCause());
+
+		} finally {
+			executor.shutdownNow();
+		}
+
+		if (null != failure.get()) {
+			throw new GradleException("Failed to execute the chunk. The completed entities are recorded in '"
+					+ checkpoint.getFile().getAbsolutePath() + "'.", failure.get());
+		}
+
+		checkpoint.clear();
+	}
+
+	/**
+	 * Execute the batch for a chunk.
+	 * @param index chunk index.
+	 * @param chunk entity names of the chunk.
+	 * @param targets entity name and data file.
+	 */
+	private void executeChunk(int index, List<String> chunk, Map<String, File> targets) {
+		Map<String, String> config = new HashMap<>(getTaskConfig().getEntityConfig());
+
+		// replacement "{tenantId}", "{directory}", "{entityName}", "{file}" keywords.
+		replaceConfigValue(config, ReplaceKeys.TENANT_ID, String.valueOf(getPluginExtension().getTenantId().get()));
+		replaceConfigValue(config, ReplaceKeys.DIRECTORY, getDirectoryFile().getAbsolutePath());
+		replaceConfigValue(config, ReplaceKeys.ENTITY_NAME, String.join(",", chunk));
+		replaceConfigValue(config, ReplaceKeys.FILE, targets.get(chunk.get(0)).getAbsolutePath());
+		getLogger().info("chunk {} config = {}", index, config);
+
+		// /temp/dir/taskname_index_config.properties
+		File propertyFile = Paths.get(getTemporaryDir().getAbsolutePath(), getName() + "_" + index + "_config.properties").toFile();
+		PropertyFileUtil.save(propertyFile, config);
+
+		javaexec(spec -> {
+			configure(spec);
+			spec.jvmArgs("-D" + getTaskConfig().getConfigProperty() + "=" + propertyFile.getAbsolutePath());
+		});
+	}
+
+	/**
+	 * Get the target entities.
+	 *
+	 * <p>
+	 * If the entities are not specified, the export lists the entities defined in the tenant,
+	 * and the import scans the data files in the directory.
+	 * </p>
+	 *
+	 * @return entity name and data file.
+	 */
+	@Internal
+	protected Map<String, File> getTargets() {
+		File directory = getDirectoryFile();
+		String extension = "." + getTaskConfig().getFileExtension();
+		Map<String, File> targets = new LinkedHashMap<>();
+
+		if (getEntities().isPresent() && !getEntities().get().isEmpty()) {
+			getEntities().get().forEach(e -> targets.put(e, new File(directory, e + extension)));
+			return targets;
+		}
+
+		if (getTaskConfig().isExport()) {
+			// "/entity/mtp/auth/User" -> "mtp.auth.User"
+			List<String> entities = listMetaDataPaths(ENTITY_PATH_PREFIX).stream()
+					.map(p -> p.substring(ENTITY_PATH_PREFIX.length()).replace('/', '.'))
+					.collect(Collectors.toList());
+			if (entities.isEmpty()) {
+				throw new GradleException("No target entity. No entity is defined in tenant " + getPluginExtension().getTenantId().get() + ".");
+			}
+
+			entities.forEach(e -> targets.put(e, new File(directory, e + extension)));
+			return targets;
+		}
+
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(extension));
+		if (null == files || 0 == files.length) {
+			throw new GradleException("No target entity. Specify entities or place data files in '" + directory.getAbsolutePath() + "'.");
+		}
+
+		Arrays.sort(files);
+		for (File file : files) {
+			String name = file.getName();
+			targets.put(name.substring(0, name.length() - extension.length()), file);
+		}
+		return targets;
+	}
+
+	/**
+	 * Get the scope of the checkpoint. If the scope changes, the completed entities are discarded.
+	 * @return scope of the checkpoint.
+	 */
+	@Internal
+	protected String getCheckpointScope() {
+		return "tenantId=" + getPluginExtension().getTenantId().get() + ",directory=" + getDirectoryFile().getAbsolutePath();
+	}
+
+	/**
+	 * @return directory of entity data files.
+	 */
+	@Internal
+	protected File getDirectoryFile() {
+		File directory = getProject().file(getDirectory().get());
+		directory.mkdirs();
+		return directory;
+	}
+
+	private static <E> List<List<E>> chunk(List<E> list, int size) {
+		if (list.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		List<List<E>> chunks = new ArrayList<>();
+		for (int i = 0; i < list.size(); i += size) {
+			chunks.add(new ArrayList<>(list.subList(i, Math.min(list.size(), i + size))));
+		}
+		return chunks;
+	}
+
+	/**
+	 * replace keys
+	 */
+	public static final class ReplaceKeys {
+		/** tenant id */
+		public static final String TENANT_ID = "tenantId";
+		/** directory of entity data files */
+		public static final String DIRECTORY = "directory";
+		/** Entity names of the chunk. Comma-separated if there are multiple. */
+		public static final String ENTITY_NAME = "entityName";
+		/** Data file of the chunk. The import executes a batch per data file. */
+		public static final String FILE = "file";
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.tools.batch;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Entity data export/import tools batch processing settings
+ */
+public class ToolsBatchEntityDataTaskConfig extends ToolsBatchTaskConfig {
+	/** system property name of the configuration file */
+	private String configProperty;
+	/** property key, value */
+	private Map<String, String> entityConfig;
+	/** data file extension */
+	private String fileExtension;
+	/** export operation */
+	private boolean export;
+	/** snapshot operation */
+	private String snapshot;
+
+	/**
+	 * <p>
+	 * property to get configuration information.
+	 * The available property keys are as follows, setting values to items with the same key name.
+	 * </p>
+	 *
+	 * <ul>
+	 * <li>configProperty = require. System property name to specify the configuration file.</li>
+	 * <li>entityConfig.key.n = optional. key of the property file specified in configProperty.</li>
+	 * <li>entityConfig.val.n = optional. Value of the property file specified in configProperty.</li>
+	 * <li>fileExtension = optional. Extension of the entity data file. Default value is "csv".</li>
+	 * <li>export = optional. If true, the batch exports the entity data, and the entities of the tenant are targeted if not specified. Default value is false.</li>
+	 * <li>snapshot = optional. Snapshot operation. "create" or "restore".</li>
+	 * </ul>
+	 * <p>* key and val must be set to the same number.</p>
+	 *
+	 *
+	 * @param props properties instance.
+	 */
+	public ToolsBatchEntityDataTaskConfig(Properties props) {
+		super(props);
+
+		configProperty = require("configProperty");
+		entityConfig = map("entityConfig", Collections.emptyMap());
+		fileExtension = getValue("fileExtension", v -> v, "csv");
+		export = getValue("export", v -> Boolean.valueOf(v), Boolean.FALSE);
+		snapshot = getValue("snapshot", v -> v, null);
+	}
+
+	/**
+	 * @return system property name of the configuration file
+	 */
+	public String getConfigProperty() {
+		return configProperty;
+	}
+
+	/**
+	 * @return property key, value
+	 */
+	public Map<String, String> getEntityConfig() {
+		return entityConfig;
+	}
+
+	/**
+	 * @return data file extension
+	 */
+	public String getFileExtension() {
+		return fileExtension;
+	}
+
+	/**
+	 * @return if true, the batch exports the entity data.
+	 */
+	public boolean isExport() {
+		return export;
+	}
+
+	/**
+	 * Snapshot operation.
+	 *
+	 * <p>
+	 * "create" - create the snapshot after the export. "restore" - extract the snapshot before the import.
+	 * </p>
+	 *
+	 * @return snapshot operation. null if not a snapshot task.
+	 */
+	public String getSnapshot() {
+		return snapshot;
+	}
+}
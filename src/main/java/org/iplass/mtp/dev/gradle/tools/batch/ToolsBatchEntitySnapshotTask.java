@@ -0,0 +1,215 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.tools.batch;
+
+import java.io.File;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Optional;
+import org.iplass.mtp.dev.gradle.TaskCheckpoint;
+import org.iplass.mtp.dev.gradle.history.TaskHistory;
+import org.iplass.mtp.dev.gradle.metadata.MetaDataManifest;
+
+/**
+ * A task that creates or restores the entity data snapshot.
+ *
+ * <p>
+ * The snapshot is an archive of the entity data files, keyed by the fingerprint of the metadata directory, the tenant id and the entities.
+ * The operation is specified by "snapshot" of the task properties file.
+ * </p>
+ *
+ * <ul>
+ * <li>create - If the snapshot of the current key exists, nothing is done. Otherwise, entity data is exported and the snapshot is created.
+ * If entities are not specified, all entities of the tenant are exported.</li>
+ * <li>restore - The snapshot of the current key is extracted and imported. If entities are specified and their snapshot does not exist,
+ * only the entities are extracted from the snapshot of all entities.</li>
+ * </ul>
+ *
+ * <p>
+ * The checkpoint is scoped by the snapshot key, so the completed entities are discarded when the metadata changes.
+ * The snapshot contains the entity data only. The metadata of the tenant is not dumped, and the key is the fingerprint of the local metadata directory.
+ * </p>
+ */
+public abstract class ToolsBatchEntitySnapshotTask extends ToolsBatchEntityDataTask {
+	/** snapshot operation: create */
+	public static final String SNAPSHOT_CREATE = "create";
+	/** snapshot operation: restore */
+	public static final String SNAPSHOT_RESTORE = "restore";
+
+	/** key of the snapshot being created or restored */
+	private String snapshotKey;
+
+	/**
+	 * @return local metadata directory. The snapshot is keyed by the fingerprint of this directory.
+	 */
+	@Input
+	abstract protected Property<String> getMetaDataDirectory();
+
+	/**
+	 * @return directory of snapshot archives.
+	 */
+	@Input
+	@Optional
+	abstract protected Property<String> getSnapshotDirectory();
+
+	@Override
+	public void doTask() {
+		String snapshot = getTaskConfig().getSnapshot();
+		String fingerprint = getMetaDataFingerprint();
+		List<String> entities = getEntities().getOrElse(Collections.emptyList());
+
+		if (SNAPSHOT_CREATE.equals(snapshot)) {
+			create(fingerprint, entities);
+
+		} else if (SNAPSHOT_RESTORE.equals(snapshot)) {
+			restore(fingerprint, entities);
+
+		} else {
+			throw new GradleException("Unknown snapshot operation \"" + snapshot + "\".");
+		}
+	}
+
+	@Override
+	protected String getCheckpointScope() {
+		return super.getCheckpointScope() + ",snapshot=" + snapshotKey;
+	}
+
+	/**
+	 * Export entity data and create the snapshot.
+	 * @param fingerprint fingerprint of the metadata directory.
+	 * @param entities entity names. If empty, all entities of the tenant.
+	 */
+	private void create(String fingerprint, List<String> entities) {
+		snapshotKey = EntitySnapshotArchive.key(fingerprint, getTenantId(), entities);
+		File archive = getSnapshotArchive(snapshotKey);
+		if (archive.exists()) {
+			getLogger().lifecycle("snapshot '{}' of the current metadata exists.", archive.getAbsolutePath());
+			return;
+		}
+
+		// Data files of the previous snapshot are not packed. Exported files are kept while resuming.
+		TaskCheckpoint checkpoint = new TaskCheckpoint(getCheckpointFile(), getCheckpointScope());
+		if (!getResume().getOrElse(Boolean.TRUE) || checkpoint.getCompleted().isEmpty()) {
+			deleteDataFiles();
+		}
+
+		// the targets are listed once. without entities, the listing executes a batch JVM.
+		Map<String, File> targets = getTargets();
+		super.doTask(targets);
+
+		Map<String, String> info = new HashMap<>();
+		info.put("metaDataDirectory", getProject().file(getMetaDataDirectory().get()).getAbsolutePath());
+		info.put("fingerprint", fingerprint);
+		info.put("tenantId", getTenantId());
+		info.put("created", ZonedDateTime.now().toString());
+		EntitySnapshotArchive.create(archive, targets, info);
+		getLogger().lifecycle("snapshot '{}' is created. ({} bytes)", archive.getAbsolutePath(), archive.length());
+	}
+
+	/**
+	 * Extract the snapshot and import entity data.
+	 * @param fingerprint fingerprint of the metadata directory.
+	 * @param entities entity names. If empty, all entities in the snapshot.
+	 */
+	private void restore(String fingerprint, List<String> entities) {
+		snapshotKey = EntitySnapshotArchive.key(fingerprint, getTenantId(), entities);
+		File archive = getSnapshotArchive(snapshotKey);
+		if (!archive.exists() && !entities.isEmpty()) {
+			// extract the entities from the snapshot of all entities.
+			String allKey = EntitySnapshotArchive.key(fingerprint, getTenantId(), Collections.emptyList());
+			if (getSnapshotArchive(allKey).exists()) {
+				snapshotKey = allKey;
+				archive = getSnapshotArchive(allKey);
+			}
+		}
+
+		if (!archive.exists()) {
+			throw new GradleException("The snapshot '" + archive.getAbsolutePath() + "' of the current metadata, tenant " + getTenantId()
+					+ " and entities " + entities + " does not exist. Run the snapshot task first.");
+		}
+
+		// remove data files extracted from the other snapshot.
+		deleteDataFiles();
+
+		List<String> extracted = EntitySnapshotArchive.extract(archive, getDirectoryFile(), entities);
+		if (!extracted.containsAll(entities)) {
+			List<String> missing = entities.stream().filter(e -> !extracted.contains(e)).collect(Collectors.toList());
+			throw new GradleException("The entities " + missing + " do not exist in the snapshot '" + archive.getAbsolutePath() + "'.");
+		}
+		getLogger().lifecycle("{} entities are extracted from the snapshot '{}'.", extracted.size(), archive.getAbsolutePath());
+
+		super.doTask();
+	}
+
+	/**
+	 * Delete the entity data files in the directory.
+	 */
+	private void deleteDataFiles() {
+		String extension = "." + getTaskConfig().getFileExtension();
+		File[] olds = getDirectoryFile().listFiles((dir, name) -> name.endsWith(extension));
+		if (null == olds) {
+			return;
+		}
+
+		for (File old : olds) {
+			if (!old.delete()) {
+				throw new GradleException("Unable to delete file '" + old.getAbsolutePath() + "'.");
+			}
+		}
+	}
+
+	/**
+	 * Get the fingerprint of the metadata directory.
+	 * @return fingerprint of the metadata directory.
+	 */
+	private String getMetaDataFingerprint() {
+		File metaDataDirectory = getProject().file(getMetaDataDirectory().get());
+		if (!metaDataDirectory.isDirectory()) {
+			throw new GradleException("The metadata directory '" + metaDataDirectory.getAbsolutePath() + "' does not exist.");
+		}
+
+		// scan incrementally with the previous manifest.
+		File manifestFile = new File(getBuildDirectory("iplass/metadata"), getName() + "_manifest.properties");
+		MetaDataManifest manifest = MetaDataManifest.scan(metaDataDirectory, MetaDataManifest.load(manifestFile));
+		manifest.save(manifestFile);
+		recordHistory(TaskHistory.METADATA_VOLUME, manifest.size());
+		return manifest.getFingerprint();
+	}
+
+	/**
+	 * Get the snapshot archive of the key.
+	 * @param key snapshot key.
+	 * @return snapshot archive.
+	 */
+	protected File getSnapshotArchive(String key) {
+		File snapshotDirectory = getSnapshotDirectory().isPresent()
+				? getProject().file(getSnapshotDirectory().get())
+				: getBuildDirectory("iplass/snapshot");
+		return new File(snapshotDirectory, key + ".zip");
+	}
+
+	private String getTenantId() {
+		return String.valueOf(getPluginExtension().getTenantId().get());
+	}
+}
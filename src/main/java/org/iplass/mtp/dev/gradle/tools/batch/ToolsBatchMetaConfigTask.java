@@ -16,17 +16,37 @@
 package org.iplass.mtp.dev.gradle.tools.batch;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.gradle.api.GradleException;
+import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
 import org.gradle.process.JavaExecSpec;
 import org.iplass.mtp.dev.gradle.PropertyFileUtil;
+import org.iplass.mtp.dev.gradle.TaskCheckpoint;
+import org.iplass.mtp.dev.gradle.history.TaskHistory;
+import org.iplass.mtp.dev.gradle.metadata.MetaDataBundle;
+import org.iplass.mtp.dev.gradle.metadata.MetaDataCanonicalizer;
+import org.iplass.mtp.dev.gradle.metadata.MetaDataManifest;
 
 /**
  * A task that executes the processing of the tools batch that sets the vmargs in meta.config.
@@ -40,9 +60,24 @@ import org.iplass.mtp.dev.gradle.PropertyFileUtil;
  * <li>{source} - source of task properties</li>
  * </ul>
  *
+ * <p>
+ * If canonicalizeDirectory is set, the exported metadata XML files in the directory are canonicalized after the batch,
+ * so that the files do not differ between exports. See {@link MetaDataCanonicalizer}.
+ * </p>
+ *
+ * <p>
+ * If bundleDirectory is set, the exported metadata files in the directory are archived in the bundle file after the batch.
+ * The bundle is published as the consumable variant of the project, and consumers extract only the paths they need. See {@link MetaDataBundle}.
+ * </p>
+ *
  * @author SEKIGUCHI Naoya
  */
 public abstract class ToolsBatchMetaConfigTask extends ToolsBatchTask<ToolsBatchMetaConfigTaskConfig> {
+	/** meta.config key of the metadata target path */
+	private static final String META_SOURCE_KEY = "meta.source";
+	/** meta.config key of the initial conversion */
+	private static final String INITIAL_CONVERT_KEY = "initialConvert";
+
 	/**
 	 * @return meta.soruce property value in the meta configuration file.
 	 */
@@ -50,19 +85,167 @@ public abstract class ToolsBatchMetaConfigTask extends ToolsBatchTask<ToolsBatch
 	@Optional
 	abstract protected ListProperty<String> getSource();
 
+	/**
+	 * get resumable mode.
+	 *
+	 * <p>
+	 * If true, the metadata paths of the tenant are listed and filtered by source (all paths if source is not specified),
+	 * the batch is executed for each chunk of the paths, and the completed paths are recorded in the checkpoint file.
+	 * If the task is interrupted, the next execution exports only the paths that have not been completed.
+	 * The checkpoint is scoped by the tenant id, the destination (service-config) and the staging directory.
+	 * </p>
+	 *
+	 * <p>
+	 * The chunks are exported into stagingDirectory, and the exported files are moved into outputDirectory when all paths are completed,
+	 * so that outputDirectory does not contain a partial export. Not supported by the initial conversion (initialConvert=true).
+	 * </p>
+	 *
+	 * @return if true, resumable mode. Default value is false.
+	 */
+	@Input
+	@Optional
+	abstract protected Property<Boolean> getResumable();
+
+	/**
+	 * @return number of metadata paths exported in a batch execution in resumable mode. Default value is 100.
+	 */
+	@Input
+	@Optional
+	abstract protected Property<Integer> getChunkSize();
+
+	/**
+	 * get staging directory of resumable mode.
+	 *
+	 * <p>
+	 * The root directory of the file metadata store of serviceConfig. Required in resumable mode.
+	 * </p>
+	 *
+	 * @return staging directory.
+	 */
+	@Input
+	@Optional
+	abstract protected Property<String> getStagingDirectory();
+
+	/**
+	 * get output directory of resumable mode.
+	 *
+	 * <p>
+	 * The exported files in stagingDirectory are moved into this directory when all paths are completed.
+	 * Required in resumable mode, and must be on the same file system as stagingDirectory.
+	 * </p>
+	 *
+	 * @return output directory.
+	 */
+	@Input
+	@Optional
+	abstract protected Property<String> getOutputDirectory();
+
+	/**
+	 * get directory of the exported metadata.
+	 *
+	 * <p>
+	 * If set, the metadata XML files in the directory are canonicalized after the batch.
+	 * </p>
+	 *
+	 * @return directory of the exported metadata.
+	 */
+	@Input
+	@Optional
+	abstract protected Property<String> getCanonicalizeDirectory();
+
+	/**
+	 * get metadata types to canonicalize.
+	 *
+	 * <p>
+	 * The metadata type is a path prefix relative to canonicalizeDirectory. e.g. "mtp/entity"
+	 * Required if canonicalizeDirectory is set, so that the other XML files in the directory are not rewritten. "*" for all XML files.
+	 * </p>
+	 *
+	 * @return metadata types to canonicalize.
+	 */
+	@Input
+	@Optional
+	abstract protected ListProperty<String> getCanonicalizeTypes();
+
+	/**
+	 * get volatile names for each metadata type.
+	 *
+	 * <p>
+	 * key is the metadata type ("*" for all types), value is the local names of elements and attributes removed on canonicalization (comma-separated).
+	 * The value of the longest matching type is used.
+	 * </p>
+	 *
+	 * @return metadata type and volatile names.
+	 */
+	@Input
+	@Optional
+	abstract protected MapProperty<String, String> getCanonicalizeVolatileNames();
+
+	/**
+	 * @return parallelism of the canonicalization. Default value is the number of available processors.
+	 */
+	@Input
+	@Optional
+	abstract protected Property<Integer> getCanonicalizeParallelism();
+
+	/**
+	 * get directory of the exported metadata to bundle.
+	 *
+	 * <p>
+	 * If set, the metadata files in the directory are archived in the bundle file after the batch (and the canonicalization).
+	 * </p>
+	 *
+	 * @return directory of the exported metadata.
+	 */
+	@Input
+	@Optional
+	abstract protected Property<String> getBundleDirectory();
+
+	/**
+	 * @return bundle file. Default value is build/iplass/metadataBundle/${taskName}.zip if bundleDirectory is set.
+	 */
+	@OutputFile
+	@Optional
+	abstract protected RegularFileProperty getBundleFile();
+
+	/**
+	 * constructor.
+	 */
+	public ToolsBatchMetaConfigTask() {
+		// the metadata is exported from the database, so the task is executed even if the inputs and the bundle are unchanged.
+		getOutputs().upToDateWhen(t -> false);
+	}
+
 	@Override
-	protected void beforeTask() {
-		getLogger().info("inputs.properties = {}", getInputs().getProperties());
+	public void doTask() {
+		if (!getResumable().getOrElse(Boolean.FALSE)) {
+			recordHistory(TaskHistory.SOURCE_COUNT, getSource().getOrElse(Collections.emptyList()).size());
+			super.doTask();
 
-		Map<String, String> config = new HashMap<>(getTaskConfig().getMetaConfig());
+		} else {
+			try {
+				// the chunks use their own property files, so beforeTask is not executed.
+				measurePhase("chunks", this::executeResumable);
 
-		getLogger().info("before config = {}", config);
-		// replacement "{tenantId}", "{source}" keywords.
-		replaceConfigValue(config, ReplaceKeys.TENANT_ID, String.valueOf(getPluginExtension().getTenantId().get()));
-		replaceConfigValue(config, ReplaceKeys.SOURCE, String.join(",", getSource().getOrElse(Collections.emptyList())));
-		getLogger().info("after config = {}", config);
+			} finally {
+				measurePhase("afterTask", this::afterTask);
+			}
+		}
 
-		PropertyFileUtil.save(getPropertyFile(), config);
+		if (getCanonicalizeDirectory().isPresent()) {
+			measurePhase("canonicalize", this::canonicalize);
+		}
+
+		if (getBundleDirectory().isPresent()) {
+			measurePhase("bundle", this::bundle);
+		}
+	}
+
+	@Override
+	protected void beforeTask() {
+		getLogger().info("inputs.properties = {}", getInputs().getProperties());
+
+		PropertyFileUtil.save(getPropertyFile(), createConfig(getSource().getOrElse(Collections.emptyList())));
 	}
 
 	@Override
@@ -72,29 +255,200 @@ public abstract class ToolsBatchMetaConfigTask extends ToolsBatchTask<ToolsBatch
 		spec.jvmArgs("-Dmeta.config=" + getPropertyFile().getAbsolutePath());
 	}
 
-	private File getPropertyFile() {
-		// /temp/dir/taskname_config.properties
-		return Paths.get(getTemporaryDir().getAbsolutePath(), getName() + "_config.properties").toFile();
+	/**
+	 * Execute the batch for each chunk of the paths that have not been completed.
+	 */
+	private void executeResumable() {
+		getLogger().info("inputs.properties = {}", getInputs().getProperties());
+		if (Boolean.parseBoolean(getTaskConfig().getMetaConfig().get(INITIAL_CONVERT_KEY))) {
+			// each execution of the initial conversion initializes the file metadata store, so a chunk would remove the files of the previous chunks.
+			throw new GradleException("Resumable mode is not supported by the initial conversion (" + INITIAL_CONVERT_KEY + "=true). Use metaSyncRdbToFile.");
+		}
+		if (!getStagingDirectory().isPresent() || !getOutputDirectory().isPresent()) {
+			throw new GradleException("stagingDirectory and outputDirectory are required in resumable mode.");
+		}
+		File staging = getProject().file(getStagingDirectory().get());
+		File output = getProject().file(getOutputDirectory().get());
+		if (staging.toPath().normalize().startsWith(output.toPath().normalize()) || output.toPath().normalize().startsWith(staging.toPath().normalize())) {
+			throw new GradleException("The staging directory '" + staging.getAbsolutePath() + "' must not overlap the output directory '" + output.getAbsolutePath() + "'.");
+		}
+
+		List<String> source = getSource().getOrElse(Collections.emptyList());
+		List<String> paths = getTargetPaths(source);
+		recordHistory(TaskHistory.SOURCE_COUNT, paths.size());
+
+		// the destination of the export is the file store of the service-config.
+		TaskCheckpoint checkpoint = new TaskCheckpoint(getCheckpointFile(), "tenantId=" + getPluginExtension().getTenantId().get()
+				+ ",destination=" + getServiceConfigPath() + ",staging=" + staging.getAbsolutePath());
+		if (checkpoint.getCompleted().isEmpty()) {
+			// do not move the files of an abandoned export.
+			getProject().delete(staging);
+		}
+		List<String> remaining = paths.stream().filter(p -> !checkpoint.isCompleted(p)).collect(Collectors.toList());
+		getLogger().lifecycle("{} paths, {} completed, {} remaining.", paths.size(), paths.size() - remaining.size(), remaining.size());
+
+		int chunkSize = Math.max(1, getChunkSize().getOrElse(100));
+		int completed = paths.size() - remaining.size();
+		for (int i = 0; i * chunkSize < remaining.size(); i++) {
+			List<String> chunk = remaining.subList(i * chunkSize, Math.min(remaining.size(), (i + 1) * chunkSize));
+			Map<String, String> config = createConfig(chunk);
+			// export only the paths of this chunk, even if the task configuration does not use the {source} keyword.
+			config.put(META_SOURCE_KEY, String.join(",", chunk));
+
+			// /temp/dir/taskname_index_config.properties
+			File propertyFile = Paths.get(getTemporaryDir().getAbsolutePath(), getName() + "_" + i + "_config.properties").toFile();
+			PropertyFileUtil.save(propertyFile, config);
+
+			javaexec(spec -> {
+				ToolsBatchMetaConfigTask.super.configure(spec);
+				spec.jvmArgs("-Dmeta.config=" + propertyFile.getAbsolutePath());
+			});
+
+			chunk.forEach(checkpoint::complete);
+			completed += chunk.size();
+			getLogger().lifecycle("chunk {} completed. ({}/{} paths)", i + 1, completed, paths.size());
+		}
+
+		// all paths are completed. if the move is interrupted, the next execution moves the rest.
+		int moved = moveStaged(staging, output);
+		getLogger().lifecycle("{} files are moved from '{}' to '{}'.", moved, staging.getAbsolutePath(), output.getAbsolutePath());
+		getProject().delete(staging);
+		checkpoint.clear();
 	}
 
-	@Override
-	protected ToolsBatchMetaConfigTaskConfig createToolsBatchConfig(Properties props) {
-		return new ToolsBatchMetaConfigTaskConfig(props);
+	/**
+	 * Move the files in the staging directory into the output directory.
+	 *
+	 * <p>
+	 * Each file is renamed atomically and replaces the file of the same path, so a file in the output directory is either the previous or the exported one.
+	 * </p>
+	 *
+	 * @param staging staging directory.
+	 * @param output output directory.
+	 * @return number of moved files.
+	 */
+	static int moveStaged(File staging, File output) {
+		if (!staging.isDirectory()) {
+			return 0;
+		}
+
+		Path root = staging.toPath();
+		try (Stream<Path> stream = Files.walk(root)) {
+			int moved = 0;
+			for (Path source : stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+				Path target = output.toPath().resolve(root.relativize(source).toString());
+				Files.createDirectories(target.getParent());
+				Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				moved++;
+			}
+			return moved;
+		} catch (AtomicMoveNotSupportedException e) {
+			throw new GradleException("Unable to move '" + e.getFile() + "'. The staging directory must be on the same file system as '" + output.getAbsolutePath() + "'.", e);
+		} catch (IOException e) {
+			throw new GradleException("Unable to move the files of '" + staging.getAbsolutePath() + "' to '" + output.getAbsolutePath() + "'.", e);
+		}
+	}
+
+	/**
+	 * Get the metadata paths to export in resumable mode.
+	 *
+	 * <p>
+	 * The metadata paths of the tenant are listed, and filtered by the source paths. "*" of the source path matches any characters.
+	 * </p>
+	 *
+	 * @param source source paths. if empty, all paths are targeted.
+	 * @return metadata paths.
+	 */
+	private List<String> getTargetPaths(List<String> source) {
+		List<Pattern> patterns = source.stream().map(ToolsBatchMetaConfigTask::toPattern).collect(Collectors.toList());
+		List<String> paths = listMetaDataPaths("/").stream()
+				.filter(p -> patterns.isEmpty() || patterns.stream().anyMatch(pattern -> pattern.matcher(p).matches()))
+				.collect(Collectors.toList());
+		if (paths.isEmpty()) {
+			throw new GradleException("No metadata path to export. source = " + source);
+		}
+		return paths;
 	}
 
-	private void replaceConfigValue(Map<String, String> config, String target, String replaceValue) {
-		String checkKey = "{" + target + "}";
-		String replaceKey = "\\{" + target + "\\}";
+	private static Pattern toPattern(String path) {
+		return Pattern.compile(Arrays.stream(path.split("\\*", -1)).map(Pattern::quote).collect(Collectors.joining(".*")));
+	}
 
-		for (String key : config.keySet()) {
-			String value = config.get(key);
+	/**
+	 * Canonicalize the exported metadata XML files.
+	 */
+	private void canonicalize() {
+		File directory = getProject().file(getCanonicalizeDirectory().get());
+		if (!directory.isDirectory()) {
+			throw new GradleException("The canonicalize directory '" + directory.getAbsolutePath() + "' does not exist.");
+		}
+		if (getCanonicalizeTypes().getOrElse(Collections.emptyList()).isEmpty()) {
+			throw new GradleException("canonicalizeTypes is not set. Specify the metadata types under '" + directory.getAbsolutePath() + "' to canonicalize.");
+		}
 
-			if (null == value || !value.contains(checkKey)) {
-				continue;
-			}
+		Map<String, List<String>> volatileNames = new HashMap<>();
+		getCanonicalizeVolatileNames().getOrElse(Collections.emptyMap()).forEach((k, v) -> volatileNames.put(k,
+				Arrays.stream(v.split(",")).map(String::trim).filter(n -> !n.isEmpty()).collect(Collectors.toList())));
+		MetaDataCanonicalizer canonicalizer = new MetaDataCanonicalizer(getCanonicalizeTypes().get(), volatileNames);
+
+		long start = System.currentTimeMillis();
+		int rewritten;
+		try {
+			rewritten = canonicalizer.canonicalize(directory, getCanonicalizeParallelism().getOrElse(Runtime.getRuntime().availableProcessors()));
+		} catch (RuntimeException e) {
+			throw new GradleException(e.getMessage(), e);
+		}
+		getLogger().lifecycle("{} metadata files are canonicalized in {} ms.", rewritten, System.currentTimeMillis() - start);
+	}
 
-			config.put(key, value.replaceAll(replaceKey, replaceValue));
+	/**
+	 * Archive the exported metadata files in the bundle file.
+	 */
+	private void bundle() {
+		File directory = getProject().file(getBundleDirectory().get());
+		if (!directory.isDirectory()) {
+			throw new GradleException("The bundle directory '" + directory.getAbsolutePath() + "' does not exist.");
 		}
+
+		// scan incrementally with the previous manifest.
+		File manifestFile = new File(getBuildDirectory("iplass/metadata"), getName() + "_bundle_manifest.properties");
+		MetaDataManifest manifest = MetaDataManifest.scan(directory, MetaDataManifest.load(manifestFile));
+		manifest.save(manifestFile);
+		recordHistory(TaskHistory.METADATA_VOLUME, manifest.size());
+
+		File bundle = getBundleFile().get().getAsFile();
+		if (MetaDataBundle.create(bundle, directory, manifest)) {
+			getLogger().lifecycle("bundle '{}' is created. ({} files, {} bytes)", bundle.getAbsolutePath(), manifest.size(), bundle.length());
+		} else {
+			getLogger().lifecycle("bundle '{}' is unchanged.", bundle.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * Create meta.config configuration.
+	 * @param source metadata target paths.
+	 * @return configuration key, value.
+	 */
+	private Map<String, String> createConfig(List<String> source) {
+		Map<String, String> config = new HashMap<>(getTaskConfig().getMetaConfig());
+
+		getLogger().info("before config = {}", config);
+		// replacement "{tenantId}", "{source}" keywords.
+		replaceConfigValue(config, ReplaceKeys.TENANT_ID, String.valueOf(getPluginExtension().getTenantId().get()));
+		replaceConfigValue(config, ReplaceKeys.SOURCE, String.join(",", source));
+		getLogger().info("after config = {}", config);
+
+		return config;
+	}
+
+	private File getPropertyFile() {
+		// /temp/dir/taskname_config.properties
+		return Paths.get(getTemporaryDir().getAbsolutePath(), getName() + "_config.properties").toFile();
+	}
+
+	@Override
+	protected ToolsBatchMetaConfigTaskConfig createToolsBatchConfig(Properties props) {
+		return new ToolsBatchMetaConfigTaskConfig(props);
 	}
 
 	/**
@@ -15,8 +15,18 @@
  */
 package org.iplass.mtp.dev.gradle.tools.batch;
 
+import java.util.Collections;
+import java.util.List;
+
+import org.gradle.api.Action;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.attributes.Usage;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.provider.Provider;
+import org.iplass.mtp.dev.gradle.RootPluginExtension;
+import org.iplass.mtp.dev.gradle.metadata.MetaDataBundle;
 
 /**
  * Plugin for tools-batch.
@@ -26,20 +36,72 @@ import org.gradle.api.Project;
 public class ToolsBatchPlugin implements Plugin<Project> {
 	/** serviceConfigView task name */
 	public static final String SERVICE_CONFIG_VIEW_TASK_NAME = "serviceConfigView";
+	/** serviceConfigMatrix task name */
+	public static final String SERVICE_CONFIG_MATRIX_TASK_NAME = "serviceConfigMatrix";
 	/** entityViewDdl task name */
 	public static final String ENTITY_VIEW_DDL_TASK_NAME = "entityViewDdl";
 	/** metaConvertRdbToFile task name */
 	public static final String META_CONVERT_RDB_TO_FILE_TASK_NAME = "metaConvertRdbToFile";
 	/** metaSyncRdbToFile task name */
 	public static final String META_SYNC_RDB_TO_FILE_TASK_NAME = "metaSyncRdbToFile";
+	/** entityExport task name */
+	public static final String ENTITY_EXPORT_TASK_NAME = "entityExport";
+	/** entityImport task name */
+	public static final String ENTITY_IMPORT_TASK_NAME = "entityImport";
+	/** entitySnapshot task name */
+	public static final String ENTITY_SNAPSHOT_TASK_NAME = "entitySnapshot";
+	/** entityRestore task name */
+	public static final String ENTITY_RESTORE_TASK_NAME = "entityRestore";
+	/** configuration name of the metadata bundle variant */
+	public static final String META_DATA_BUNDLE_ELEMENTS_CONFIGURATION_NAME = "iplassMetaDataBundleElements";
 
 	@Override
 	public void apply(Project project) {
 		// register tasks.
 		project.getTasks().register(SERVICE_CONFIG_VIEW_TASK_NAME, ToolsBatchTask.class);
+		project.getTasks().register(SERVICE_CONFIG_MATRIX_TASK_NAME, ToolsBatchServiceConfigMatrixTask.class);
 		project.getTasks().register(ENTITY_VIEW_DDL_TASK_NAME, ToolsBatchTask.class);
 
-		project.getTasks().register(META_CONVERT_RDB_TO_FILE_TASK_NAME, ToolsBatchMetaConfigTask.class);
-		project.getTasks().register(META_SYNC_RDB_TO_FILE_TASK_NAME, ToolsBatchMetaConfigTask.class);
+		// the bundle file is an output only if bundleDirectory is set.
+		Action<ToolsBatchMetaConfigTask> bundleFile = t -> t.getBundleFile().convention(t.getBundleDirectory()
+				.flatMap(d -> project.getLayout().getBuildDirectory().file("iplass/metadataBundle/" + t.getName() + ".zip")));
+		project.getTasks().register(META_CONVERT_RDB_TO_FILE_TASK_NAME, ToolsBatchMetaConfigTask.class, bundleFile);
+		project.getTasks().register(META_SYNC_RDB_TO_FILE_TASK_NAME, ToolsBatchMetaConfigTask.class, bundleFile);
+
+		// the bundle of the metadata export task is published as a consumable variant, so that the export runs once for all consumers.
+		RootPluginExtension extension = project.getExtensions().getByType(RootPluginExtension.class);
+		Provider<ToolsBatchMetaConfigTask> bundleTask = extension.getMetaDataBundleTask().orElse(META_SYNC_RDB_TO_FILE_TASK_NAME)
+				.flatMap(n -> project.getTasks().named(n, ToolsBatchMetaConfigTask.class));
+		Configuration bundleElements = project.getConfigurations().create(META_DATA_BUNDLE_ELEMENTS_CONFIGURATION_NAME, c -> {
+			c.setDescription("iPLAss metadata bundle exported by " + ToolsBatchMetaConfigTask.class.getSimpleName() + ".");
+			c.setCanBeConsumed(true);
+			c.setCanBeResolved(false);
+			c.getAttributes().attribute(Usage.USAGE_ATTRIBUTE, project.getObjects().named(Usage.class, MetaDataBundle.USAGE));
+		});
+		// the bundle is published only if bundleDirectory of the task is set. otherwise, the variant has no artifact.
+		// the location of the output is mapped before the task is executed, and the task dependency is declared by builtBy.
+		Provider<List<RegularFile>> bundle = bundleTask.flatMap(t -> t.getBundleDirectory().flatMap(d -> t.getBundleFile().getLocationOnly()))
+				.map(Collections::singletonList)
+				.orElse(Collections.emptyList());
+		bundleElements.getOutgoing().artifacts(bundle, a -> {
+			a.setType("zip");
+			a.builtBy(bundleTask);
+		});
+
+		// entityExport and entityImport use the same directory by default.
+		Provider<String> entityDataDirectory = project.getLayout().getBuildDirectory().dir("iplass/entityData")
+				.map(d -> d.getAsFile().getAbsolutePath());
+		project.getTasks().register(ENTITY_EXPORT_TASK_NAME, ToolsBatchEntityDataTask.class,
+				t -> t.getDirectory().convention(entityDataDirectory));
+		project.getTasks().register(ENTITY_IMPORT_TASK_NAME, ToolsBatchEntityDataTask.class,
+				t -> t.getDirectory().convention(entityDataDirectory));
+
+		// snapshot tasks use their own directories, so that they do not overwrite the data of entityExport and entityImport.
+		project.getTasks().register(ENTITY_SNAPSHOT_TASK_NAME, ToolsBatchEntitySnapshotTask.class,
+				t -> t.getDirectory().convention(project.getLayout().getBuildDirectory().dir("iplass/entitySnapshot")
+						.map(d -> d.getAsFile().getAbsolutePath())));
+		project.getTasks().register(ENTITY_RESTORE_TASK_NAME, ToolsBatchEntitySnapshotTask.class,
+				t -> t.getDirectory().convention(project.getLayout().getBuildDirectory().dir("iplass/entityRestore")
+						.map(d -> d.getAsFile().getAbsolutePath())));
 	}
 }
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.tools.batch;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.process.JavaExecSpec;
+import org.iplass.mtp.dev.gradle.PropertyFileUtil;
+import org.iplass.mtp.dev.gradle.launcher.BatchLauncher;
+import org.iplass.mtp.dev.gradle.launcher.ServiceConfigMatrix;
+
+/**
+ * A task that validates multiple service-configs with the service-config viewer.
+ *
+ * <p>
+ * All service-configs are resolved and merged concurrently in a batch JVM, each in its own class loader with its own "mtp.config".
+ * The merge errors, the differences between the service-configs and the effective values are written to a report file.
+ * See {@link ServiceConfigMatrix} and {@link ServiceConfigMatrixReport}.
+ * </p>
+ *
+ * <p>
+ * The batch JVM prevents System.exit of the viewer with the security manager, which is not allowed on Java 24 or later.
+ * On these versions, the viewer is executed in a JVM for each service-config instead.
+ * </p>
+ */
+public abstract class ToolsBatchServiceConfigMatrixTask extends ToolsBatchTask<ToolsBatchTaskConfig> {
+	/** java version that requires the security manager to be allowed explicitly */
+	private static final int SECURITY_MANAGER_ALLOW_VERSION = 18;
+	/** java version that does not allow the security manager */
+	private static final int SECURITY_MANAGER_REMOVED_VERSION = 24;
+
+	/**
+	 * get service-configs to validate.
+	 *
+	 * <p>
+	 * File paths or classpath resources.
+	 * </p>
+	 *
+	 * @return service-configs to validate.
+	 */
+	@Input
+	abstract protected ListProperty<String> getServiceConfigs();
+
+	/**
+	 * @return report file. Default value is build/iplass/serviceConfigMatrix/${taskName}.txt
+	 */
+	@Input
+	@Optional
+	abstract protected Property<String> getReportFile();
+
+	/**
+	 * @return if true, the task fails when any service-config fails to merge. Default value is true.
+	 */
+	@Input
+	@Optional
+	abstract protected Property<Boolean> getFailOnError();
+
+	@Override
+	public void doTask() {
+		List<String> configs = getServiceConfigs().getOrElse(Collections.emptyList());
+		if (configs.isEmpty()) {
+			throw new GradleException("serviceConfigs is required.");
+		}
+
+		// remove the results of the previous execution.
+		File outputDirectory = getOutputDirectory();
+		File[] olds = outputDirectory.listFiles();
+		if (null != olds) {
+			for (File old : olds) {
+				old.delete();
+			}
+		}
+
+		if (SECURITY_MANAGER_REMOVED_VERSION <= getJavaLanguageVersion()) {
+			getLogger().info("The security manager is not allowed on Java {}. A JVM is executed for each service-config.", getJavaLanguageVersion());
+			measurePhase("javaexecs", () -> executeEach(configs, outputDirectory));
+		} else {
+			super.doTask();
+		}
+
+		ServiceConfigMatrixReport report = new ServiceConfigMatrixReport(configs, outputDirectory);
+		File reportFile = getReportFile().isPresent()
+				? getProject().file(getReportFile().get())
+				: new File(getBuildDirectory("iplass/serviceConfigMatrix"), getName() + ".txt");
+		report.write(reportFile);
+
+		getLogger().lifecycle("{} service-configs, {} errors, {} differences. report: {}", configs.size(), report.getErrorCount(),
+				report.getDifferenceCount(), reportFile.getAbsolutePath());
+		if (0 < report.getErrorCount() && getFailOnError().getOrElse(Boolean.TRUE)) {
+			throw new GradleException(report.getErrorCount() + " service-configs failed to merge. See the report '" + reportFile.getAbsolutePath() + "'.");
+		}
+	}
+
+	@Override
+	protected void configure(JavaExecSpec spec) {
+		super.configure(spec);
+
+		// execute the viewer for each service-config through ServiceConfigMatrix.
+		List<String> configs = getServiceConfigs().get();
+		List<String> args = new ArrayList<>();
+		args.add(getOutputDirectory().getAbsolutePath());
+		args.add(spec.getMainClass().get());
+		args.add(String.valueOf(configs.size()));
+		args.addAll(configs);
+		args.addAll(spec.getArgs());
+
+		File launcherDirectory = getBuildDirectory("iplass/launcher");
+		BatchLauncher.extract(launcherDirectory);
+		spec.classpath(launcherDirectory);
+		spec.getMainClass().set(ServiceConfigMatrix.class.getName());
+		spec.setArgs(args);
+
+		if (SECURITY_MANAGER_ALLOW_VERSION <= getJavaLanguageVersion()) {
+			// used to prevent System.exit of the viewer from terminating the other service-configs.
+			spec.jvmArgs("-Djava.security.manager=allow");
+		}
+	}
+
+	/**
+	 * Execute the viewer in a JVM for each service-config, and write the same results as {@link ServiceConfigMatrix}.
+	 * @param configs service-configs.
+	 * @param outputDirectory output directory.
+	 */
+	private void executeEach(List<String> configs, File outputDirectory) {
+		for (int i = 0; i < configs.size(); i++) {
+			String config = configs.get(i);
+			File outputFile = new File(outputDirectory, "config_" + i + ".out");
+			String error = null;
+			try (OutputStream output = new FileOutputStream(outputFile)) {
+				javaexec(spec -> {
+					ToolsBatchServiceConfigMatrixTask.super.configure(spec);
+					// takes precedence over mtp.config of the task.
+					spec.jvmArgs("-D" + ServiceConfigMatrix.CONFIG_PROPERTY + "=" + config);
+					spec.setStandardOutput(output);
+					spec.setErrorOutput(output);
+				});
+			} catch (IOException e) {
+				throw new GradleException("Unable to create file '" + outputFile.getAbsolutePath() + "'.", e);
+			} catch (GradleException e) {
+				error = e.getMessage();
+			}
+
+			PropertyFileUtil.save(new File(outputDirectory, "config_" + i + ".properties"),
+					null == error ? Collections.singletonMap("status", "0") : Collections.singletonMap("error", error));
+		}
+	}
+
+	/**
+	 * @return output directory of the service-config matrix.
+	 */
+	@Internal
+	protected File getOutputDirectory() {
+		File directory = getBuildDirectory("iplass/serviceConfigMatrix/" + getName());
+		directory.mkdirs();
+		return directory;
+	}
+}
@@ -18,10 +18,14 @@ package org.iplass.mtp.dev.gradle.tools.batch;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.function.Consumer;
 
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
 import org.gradle.process.JavaExecSpec;
 import org.iplass.mtp.dev.gradle.JavaBatchTask;
 import org.iplass.mtp.dev.gradle.PropertyFileUtil;
@@ -40,23 +44,47 @@ public abstract class ToolsBatchTask<T extends ToolsBatchTaskConfig> extends Jav
 	/** task configuration */
 	private T taskConfig;
 
+	/**
+	 * get in-process execution usage.
+	 *
+	 * <p>
+	 * Used only if the task configuration is marked as inProcess.
+	 * If set as a task property, the task property takes precedence over the extension value.
+	 * </p>
+	 *
+	 * @return if true, execute the batch in a Gradle worker daemon.
+	 */
+	@Input
+	@Optional
+	abstract protected Property<Boolean> getInProcess();
+
 	/**
 	 * constructor
 	 */
 	public ToolsBatchTask() {
 		super();
+	}
 
-		getLogger().info("load task {}.", getName());
-
-		Properties props = loadProperties(getName());
-		getLogger().info("properties value = {}", props);
-		taskConfig = createToolsBatchConfig(props);
-
-		setDescription(taskConfig.getDescription());
+	/**
+	 * Get task description.
+	 *
+	 * <p>
+	 * If the description is not set, the description of the task configuration is returned.
+	 * The task configuration is not read until the description is needed.
+	 * </p>
+	 *
+	 * @return task description.
+	 */
+	@Internal
+	@Override
+	public String getDescription() {
+		String description = super.getDescription();
+		return null != description ? description : getTaskConfig().getDescription();
 	}
 
 	@Override
 	protected void configure(JavaExecSpec spec) {
+		T taskConfig = getTaskConfig();
 		spec.getMainClass().set(taskConfig.getMainClass());
 
 		ifExists(taskConfig.getArgs(), v -> spec.args(v));
@@ -65,6 +93,17 @@ public abstract class ToolsBatchTask<T extends ToolsBatchTaskConfig> extends Jav
 		}
 	}
 
+	@Override
+	protected boolean useInProcess() {
+		return getTaskConfig().isInProcess() && getInProcess().orElse(getPluginExtension().getInProcess()).getOrElse(Boolean.FALSE);
+	}
+
+	@Override
+	protected boolean useSpeculativeLaunch() {
+		// the standard input can not be handed over.
+		return !getTaskConfig().isUseStandardInput() && super.useSpeculativeLaunch();
+	}
+
 	/**
 	 * If the value is not null, the process is executed.
 	 * @param <V> value type.
@@ -89,12 +128,45 @@ public abstract class ToolsBatchTask<T extends ToolsBatchTaskConfig> extends Jav
 		}
 	}
 
+	/**
+	 * Replace the "{target}" keyword in the configuration value.
+	 * @param config configuration key, value.
+	 * @param target replacement keyword. (without braces)
+	 * @param replaceValue replacement value.
+	 */
+	protected void replaceConfigValue(Map<String, String> config, String target, String replaceValue) {
+		String checkKey = "{" + target + "}";
+
+		for (String key : config.keySet()) {
+			String value = config.get(key);
+
+			if (null == value || !value.contains(checkKey)) {
+				continue;
+			}
+
+			config.put(key, value.replace(checkKey, replaceValue));
+		}
+	}
+
 	/**
 	 * get a configuration instance.
+	 *
+	 * <p>
+	 * The task properties file is read on the first call.
+	 * </p>
+	 *
 	 * @return configuration instance.
 	 */
 	@Internal
-	protected T getTaskConfig() {
+	protected synchronized T getTaskConfig() {
+		if (null == taskConfig) {
+			getLogger().info("load task {}.", getName());
+
+			Properties props = loadProperties(getName());
+			getLogger().info("properties value = {}", props);
+			taskConfig = createToolsBatchConfig(props);
+		}
+
 		return taskConfig;
 	}
 
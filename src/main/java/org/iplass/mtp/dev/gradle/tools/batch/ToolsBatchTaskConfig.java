@@ -43,6 +43,8 @@ public class ToolsBatchTaskConfig {
 	private List<String> args;
 	/** use stdin */
 	private boolean useStandardInput;
+	/** safe to execute in process */
+	private boolean inProcess;
 
 	/**
 	 * constructor
@@ -57,6 +59,7 @@ public class ToolsBatchTaskConfig {
 	 * <li>description = require. task description.</li>
 	 * <li>args.n = optional. If multiple arguments exist, set them with sequential numbers. <br> e.g. args.0=ONE args.1=TWO</li>
 	 * <li>useStandardInput = optional. Set a boolean value. Default value is false.</li>
+	 * <li>inProcess = optional. Set true if the batch is safe to execute in a Gradle worker daemon (returns from main without System.exit). Default value is false.</li>
 	 * </ul>
 	 *
 	 *
@@ -70,6 +73,7 @@ public class ToolsBatchTaskConfig {
 
 		this.args = list("args", Collections.emptyList());
 		this.useStandardInput = getValue("useStandardInput", v -> Boolean.valueOf(v), Boolean.FALSE);
+		this.inProcess = getValue("inProcess", v -> Boolean.valueOf(v), Boolean.FALSE);
 
 	}
 
@@ -107,6 +111,19 @@ public class ToolsBatchTaskConfig {
 		return useStandardInput;
 	}
 
+	/**
+	 * Safe to execute in process.
+	 *
+	 * <p>
+	 * if true, the batch can be executed in a Gradle worker daemon.
+	 * </p>
+	 *
+	 * @return safe to execute in process
+	 */
+	public boolean isInProcess() {
+		return inProcess;
+	}
+
 	/**
 	 * Read the required value from the property.
 	 *
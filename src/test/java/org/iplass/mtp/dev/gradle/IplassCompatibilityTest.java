@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * IplassCompatibility test
+ */
+public class IplassCompatibilityTest {
+
+	@Test
+	public void testFindIplassVersion() {
+		assertEquals("3.2.15", IplassCompatibility.findIplassVersion(
+				Arrays.asList(new File("/lib/iplass-core-ee-3.2.15.jar"), new File("/lib/iplass-core-3.2.15.jar"))));
+		assertEquals("4.0.0-SNAPSHOT", IplassCompatibility.findIplassVersion(Arrays.asList(new File("/lib/iplass-core-4.0.0-SNAPSHOT.jar"))));
+		assertNull(IplassCompatibility.findIplassVersion(Arrays.asList(new File("/lib/iplass-web-3.2.15.jar"))));
+	}
+
+	@Test
+	public void testValidate() {
+		assertDoesNotThrow(() -> IplassCompatibility.validate("3.2.15", 8));
+		assertDoesNotThrow(() -> IplassCompatibility.validate("3.2.15", 17));
+		assertDoesNotThrow(() -> IplassCompatibility.validate("4.0.0", 21));
+		assertThrows(IllegalStateException.class, () -> IplassCompatibility.validate("3.2.15", 21));
+		assertThrows(IllegalStateException.class, () -> IplassCompatibility.validate("4.0.0", 17));
+		// not in the compatibility matrix.
+		assertDoesNotThrow(() -> IplassCompatibility.validate("5.0.0", 8));
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * PathingJar test
+ */
+public class PathingJarTest {
+	@TempDir
+	File directory;
+
+	@Test
+	public void testClassPath() throws IOException {
+		File lib = new File(directory, "lib dir/a.jar");
+		File classes = new File(directory, "classes/");
+
+		File jar = PathingJar.get(new File(directory, "classpath"), Arrays.asList(lib, classes));
+
+		try (JarFile jarFile = new JarFile(jar)) {
+			String classPath = jarFile.getManifest().getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+			assertEquals(lib.toURI() + " " + classes.toURI(), classPath);
+			assertFalse(classPath.contains("lib dir"));
+		}
+	}
+
+	@Test
+	public void testReuseAndReplace() {
+		File output = new File(directory, "classpath");
+		File first = PathingJar.get(output, Collections.singletonList(new File(directory, "a.jar")));
+		long lastModified = first.lastModified();
+
+		assertEquals(first, PathingJar.get(output, Collections.singletonList(new File(directory, "a.jar"))));
+		assertEquals(lastModified, first.lastModified());
+
+		File second = PathingJar.get(output, Collections.singletonList(new File(directory, "b.jar")));
+		assertNotEquals(first, second);
+		assertTrue(second.exists());
+		assertFalse(first.exists());
+		assertEquals(1, output.list().length);
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.GradleRunner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * RootPlugin functional test
+ */
+public class RootPluginFunctionalTest {
+	/** output prefix of the realized task */
+	private static final String REALIZED = "iplass task realized: ";
+
+	@TempDir
+	File projectDirectory;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		write("settings.gradle", "rootProject.name = 'sample'\n");
+		write("build.gradle", "plugins {\n"
+				+ "	id 'org.iplass.dev'\n"
+				+ "}\n"
+				+ "tasks.withType(org.iplass.mtp.dev.gradle.AbstractTask).configureEach {\n"
+				+ "	println '" + REALIZED + "' + it.name\n"
+				+ "}\n");
+	}
+
+	@Test
+	public void testHelpRealizesNoTask() {
+		BuildResult result = run("help");
+
+		assertFalse(result.getOutput().contains(REALIZED), result.getOutput());
+	}
+
+	@Test
+	public void testJavaPluginApplied() {
+		BuildResult result = run("tasks", "--all");
+
+		assertTrue(result.getOutput().contains("compileJava"), result.getOutput());
+		assertTrue(result.getOutput().contains(REALIZED + "metaSyncRdbToFile"), result.getOutput());
+	}
+
+	@Test
+	public void testInProcessExecution() throws IOException {
+		// stub of the service-config viewer in the project classes.
+		File viewer = new File(projectDirectory, "src/main/java/org/iplass/mtp/tools/batch/config/ServiceConfigViewer.java");
+		viewer.getParentFile().mkdirs();
+		String source = "package org.iplass.mtp.tools.batch.config;\n"
+				+ "public class ServiceConfigViewer {\n"
+				+ "	static int count;\n"
+				+ "	public static void main(String[] args) {\n"
+				+ "		count++;\n"
+				+ "		System.out.println(\"viewer config=\" + System.getProperty(\"mtp.config\") + \" language=\" + System.getProperty(\"batch.language\")\n"
+				+ "				+ \" count=\" + count + \" version=1\");\n"
+				+ "		System.exit(0);\n"
+				+ "	}\n"
+				+ "}\n";
+		write("src/main/java/org/iplass/mtp/tools/batch/config/ServiceConfigViewer.java", source);
+		Files.write(new File(projectDirectory, "build.gradle").toPath(), ("iplass {\n"
+				+ "	inProcess = true\n"
+				+ "	serviceConfig = 'sample-service-config.xml'\n"
+				+ "	language = 'ja'\n"
+				+ "}\n"
+				+ "serviceConfigView.doLast {\n"
+				+ "	println 'gradle config=' + System.getProperty('mtp.config')\n"
+				+ "}\n").getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+		BuildResult result = run("serviceConfigView");
+
+		// System.exit(0) of the batch does not terminate the worker daemon.
+		assertTrue(result.getOutput().contains("viewer config=sample-service-config.xml language=ja count=1 version=1"), result.getOutput());
+		// the system properties of the batch are not set in the Gradle process.
+		assertTrue(result.getOutput().contains("gradle config=null"), result.getOutput());
+
+		// the classes are loaded again when they change, even if the worker daemon is reused.
+		write("src/main/java/org/iplass/mtp/tools/batch/config/ServiceConfigViewer.java", source.replace("version=1", "version=2"));
+		result = run("serviceConfigView");
+		assertTrue(result.getOutput().contains("count=1 version=2"), result.getOutput());
+	}
+
+	@Test
+	public void testSchedulingHint() throws IOException {
+		write("settings.gradle", "rootProject.name = 'sample'\ninclude 'a', 'b'\n");
+		for (String project : Arrays.asList("a", "b")) {
+			new File(projectDirectory, project).mkdirs();
+			write(project + "/build.gradle", "plugins {\n"
+					+ "	id 'org.iplass.dev'\n"
+					+ "}\n"
+					+ "iplass {\n"
+					+ "	schedulingHint = true\n"
+					+ "}\n");
+		}
+
+		// history of the Gradle user home of the test kit. :a:metaSyncRdbToFile is longer than :b:metaSyncRdbToFile, but it is not executed.
+		Files.write(new File(projectDirectory, "build.gradle").toPath(), ("def history = new org.iplass.mtp.dev.gradle.history.TaskHistory("
+				+ "org.iplass.mtp.dev.gradle.history.TaskHistory.getFile(gradle.gradleUserHomeDir, rootDir))\n"
+				+ "[':a:serviceConfigView': 900, ':b:serviceConfigView': 500, ':a:metaSyncRdbToFile': 300, ':b:metaSyncRdbToFile': 100].each { task, duration ->\n"
+				+ "	history.append([task: task, outcome: 'SUCCESS', duration: String.valueOf(duration)])\n"
+				+ "}\n").getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+		BuildResult result = run("--dry-run", ":b:metaSyncRdbToFile", ":b:serviceConfigView", ":a:serviceConfigView");
+
+		// the longest tasks come first across the projects.
+		String output = result.getOutput();
+		int a = output.indexOf(":a:serviceConfigView SKIPPED");
+		int b = output.indexOf(":b:serviceConfigView SKIPPED");
+		int sync = output.indexOf(":b:metaSyncRdbToFile SKIPPED");
+		assertTrue(0 <= a && a < b && b < sync, output);
+	}
+
+	@Test
+	public void testMetaDataBundleVariant() throws IOException {
+		write("settings.gradle", "rootProject.name = 'sample'\ninclude 'producer', 'consumer'\n");
+		new File(projectDirectory, "producer").mkdirs();
+		write("producer/build.gradle", "plugins {\n"
+				+ "	id 'org.iplass.dev'\n"
+				+ "}\n");
+		new File(projectDirectory, "consumer").mkdirs();
+		write("consumer/build.gradle", "plugins {\n"
+				+ "	id 'org.iplass.dev'\n"
+				+ "}\n"
+				+ "dependencies {\n"
+				+ "	iplassMetaDataBundle project(':producer')\n"
+				+ "}\n"
+				+ "tasks.register('printBundle') {\n"
+				+ "	def bundle = configurations.iplassMetaDataBundle\n"
+				+ "	doLast {\n"
+				+ "		println 'bundles=' + bundle.files.size()\n"
+				+ "	}\n"
+				+ "}\n");
+
+		// the variant without bundleDirectory has no artifact, and resolving it does not fail.
+		BuildResult result = run(":consumer:printBundle");
+		assertTrue(result.getOutput().contains("bundles=0"), result.getOutput());
+		assertFalse(result.getOutput().contains(":producer:metaSyncRdbToFile"), result.getOutput());
+
+		// the bundle is built by the export task of the producer.
+		Files.write(new File(projectDirectory, "producer/build.gradle").toPath(), ("metaSyncRdbToFile {\n"
+				+ "	bundleDirectory = 'src/main/resources/metadata'\n"
+				+ "}\n").getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+		result = run("--dry-run", ":consumer:metaBundleExtract");
+		assertTrue(result.getOutput().contains(":producer:metaSyncRdbToFile SKIPPED"), result.getOutput());
+	}
+
+	private BuildResult run(String... arguments) {
+		return GradleRunner.create()
+				.withProjectDir(projectDirectory)
+				.withPluginClasspath()
+				.withArguments(arguments)
+				.build();
+	}
+
+	private void write(String path, String content) throws IOException {
+		Files.write(new File(projectDirectory, path).toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+}
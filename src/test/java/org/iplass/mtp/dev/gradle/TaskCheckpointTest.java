@@ -0,0 +1,72 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * TaskCheckpoint test
+ */
+public class TaskCheckpointTest {
+	@TempDir
+	File directory;
+
+	@Test
+	public void testCompleteAndResume() {
+		File file = new File(directory, "checkpoint/task.properties");
+		TaskCheckpoint checkpoint = new TaskCheckpoint(file, "tenantId=1");
+		checkpoint.complete("mtp.auth.User");
+		checkpoint.complete("mtp.auth.Group");
+		assertTrue(file.exists());
+
+		TaskCheckpoint resumed = new TaskCheckpoint(file, "tenantId=1");
+		assertEquals(Arrays.asList("mtp.auth.Group", "mtp.auth.User"), Arrays.asList(resumed.getCompleted().toArray()));
+		assertTrue(resumed.isCompleted("mtp.auth.User"));
+		assertFalse(resumed.isCompleted("mtp.auth.Role"));
+		assertFalse(new File(file.getParentFile(), "task.properties.tmp").exists());
+	}
+
+	@Test
+	public void testScopeChanged() {
+		File file = new File(directory, "task.properties");
+		new TaskCheckpoint(file, "tenantId=1,directory=/a").complete("mtp.auth.User");
+
+		TaskCheckpoint other = new TaskCheckpoint(file, "tenantId=2,directory=/a");
+		assertEquals(Collections.emptySet(), other.getCompleted());
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public void testClear() {
+		File file = new File(directory, "task.properties");
+		TaskCheckpoint checkpoint = new TaskCheckpoint(file, "tenantId=1");
+		checkpoint.complete("mtp.auth.User");
+		checkpoint.clear();
+
+		assertFalse(file.exists());
+		assertFalse(checkpoint.isCompleted("mtp.auth.User"));
+		assertEquals(Collections.emptySet(), new TaskCheckpoint(file, "tenantId=1").getCompleted());
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.history;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * SchedulingHintService test
+ */
+public class SchedulingHintServiceTest {
+	@Test
+	public void testGetExpectedDurations() {
+		List<Map<String, String>> records = new ArrayList<>();
+		for (int i = 1; i <= 12; i++) {
+			records.add(record(":a:export", TaskHistory.SUCCESS, i * 100L));
+		}
+		records.add(record(":a:export", TaskHistory.FAILED, 10000L));
+		records.add(record(":a:import", TaskHistory.SUCCESS, 50L));
+		records.add(record(":a:import", TaskHistory.SUCCESS, 70L));
+
+		Map<String, Long> durations = SchedulingHintService.getExpectedDurations(records);
+
+		// the latest 10 successful runs are 300..1200, and the lower of the middle values is 700.
+		assertEquals(700L, durations.get(":a:export"));
+		assertEquals(50L, durations.get(":a:import"));
+		assertEquals(2, durations.size());
+	}
+
+	@Test
+	public void testGetLongerTasks() {
+		Map<String, Long> durations = new HashMap<>();
+		durations.put(":a:longest", 900L);
+		durations.put(":a:long", 500L);
+		durations.put(":a:short1", 100L);
+		durations.put(":a:short2", 100L);
+		durations.put(":b:other", 700L);
+
+		// all longer tasks of any project, the longest first.
+		assertEquals(Arrays.asList(":a:longest", ":b:other", ":a:long"), SchedulingHintService.getLongerTasks(durations, ":a:short1", p -> true));
+		assertEquals(Arrays.asList(":a:longest", ":b:other", ":a:long", ":a:short1"), SchedulingHintService.getLongerTasks(durations, ":a:short2", p -> true));
+		assertEquals(Collections.emptyList(), SchedulingHintService.getLongerTasks(durations, ":a:longest", p -> true));
+		assertEquals(Collections.emptyList(), SchedulingHintService.getLongerTasks(durations, ":a:unknown", p -> true));
+
+		// a longer task that does not exist does not break the order of the others.
+		assertEquals(Arrays.asList(":a:longest", ":a:long"), SchedulingHintService.getLongerTasks(durations, ":a:short1", p -> !":b:other".equals(p)));
+	}
+
+	private static Map<String, String> record(String task, String outcome, long duration) {
+		Map<String, String> record = new HashMap<>();
+		record.put(TaskHistory.TASK, task);
+		record.put(TaskHistory.OUTCOME, outcome);
+		record.put(TaskHistory.DURATION, String.valueOf(duration));
+		return record;
+	}
+}
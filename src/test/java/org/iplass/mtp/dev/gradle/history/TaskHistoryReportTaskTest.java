@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.history;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * TaskHistoryReportTask test
+ */
+public class TaskHistoryReportTaskTest {
+	@Test
+	public void testPercentile() {
+		List<Long> sorted = Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+		assertEquals(5L, TaskHistoryReportTask.percentile(sorted, 50));
+		assertEquals(9L, TaskHistoryReportTask.percentile(sorted, 90));
+		assertEquals(10L, TaskHistoryReportTask.percentile(sorted, 95));
+		assertEquals(1L, TaskHistoryReportTask.percentile(sorted, 0));
+		assertEquals(10L, TaskHistoryReportTask.percentile(sorted, 100));
+
+		// nearest rank.
+		assertEquals(7L, TaskHistoryReportTask.percentile(Collections.singletonList(7L), 95));
+		assertEquals(2L, TaskHistoryReportTask.percentile(Arrays.asList(1L, 2L, 3L), 50));
+	}
+
+	@Test
+	public void testMedian() {
+		assertEquals(3L, TaskHistoryReportTask.median(Arrays.asList(5L, 1L, 3L)));
+		// the lower of the middle values.
+		assertEquals(2L, TaskHistoryReportTask.median(Arrays.asList(4L, 1L, 2L, 3L)));
+		assertEquals(6L, TaskHistoryReportTask.median(Collections.singletonList(6L)));
+	}
+}
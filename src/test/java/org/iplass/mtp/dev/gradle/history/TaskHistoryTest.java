@@ -0,0 +1,109 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.history;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * TaskHistory test
+ */
+public class TaskHistoryTest {
+	@TempDir
+	File directory;
+
+	@Test
+	public void testAppendAndRead() throws IOException {
+		File file = new File(directory, "history/project.tsv");
+		TaskHistory history = new TaskHistory(file);
+		assertEquals(Collections.emptyList(), history.read());
+
+		Map<String, String> record = record(":entityExport", "1", 1200L);
+		record.put(TaskHistory.JVM, "-Xmx1g\t-Dpath=C:\\temp\nnext");
+		record.put(TaskHistory.PHASES, null);
+		history.append(record);
+		history.append(record(":entityImport", "2", 800L));
+
+		List<Map<String, String>> records = history.read();
+		assertEquals(2, records.size());
+		assertEquals("-Xmx1g\t-Dpath=C:\\temp\nnext", records.get(0).get(TaskHistory.JVM));
+		assertFalse(records.get(0).containsKey(TaskHistory.PHASES));
+		assertEquals(Arrays.asList(TaskHistory.TASK, TaskHistory.TENANT, TaskHistory.OUTCOME, TaskHistory.DURATION, TaskHistory.JVM),
+				Arrays.asList(records.get(0).keySet().toArray()));
+		assertEquals(record(":entityImport", "2", 800L), records.get(1));
+
+		// one line per record, escaped.
+		List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		assertEquals(2, lines.size());
+		assertTrue(lines.get(0).endsWith("\tjvm=-Xmx1g\\t-Dpath=C:\\\\temp\\nnext"));
+	}
+
+	@Test
+	public void testCompact() {
+		File file = new File(directory, "project.tsv");
+		TaskHistory history = new TaskHistory(file, 1L, 3);
+		for (long i = 0; i < 5; i++) {
+			history.append(record(":entityExport", "1", i));
+			history.append(record(":entityExport", "2", i));
+		}
+		history.append(record(":metaExport", "1", 9L));
+
+		List<Map<String, String>> records = history.read();
+		assertEquals(7, records.size());
+		assertEquals(Arrays.asList("2", "3", "4"), durations(records, ":entityExport", "1"));
+		assertEquals(Arrays.asList("2", "3", "4"), durations(records, ":entityExport", "2"));
+		assertEquals(Arrays.asList("9"), durations(records, ":metaExport", "1"));
+	}
+
+	@Test
+	public void testGetFile() {
+		File home = new File(directory, "home");
+		File file = TaskHistory.getFile(home, new File(directory, "project"));
+		assertEquals(new File(home, "iplass/history"), file.getParentFile());
+		assertTrue(file.getName().matches("[0-9a-f]{16}\\.tsv"));
+		assertEquals(file, TaskHistory.getFile(home, new File(directory, "project")));
+		assertFalse(file.equals(TaskHistory.getFile(home, new File(directory, "other"))));
+	}
+
+	private static Map<String, String> record(String task, String tenant, long duration) {
+		Map<String, String> record = new LinkedHashMap<>();
+		record.put(TaskHistory.TASK, task);
+		record.put(TaskHistory.TENANT, tenant);
+		record.put(TaskHistory.OUTCOME, TaskHistory.SUCCESS);
+		record.put(TaskHistory.DURATION, String.valueOf(duration));
+		return record;
+	}
+
+	private static List<String> durations(List<Map<String, String>> records, String task, String tenant) {
+		return records.stream().filter(r -> task.equals(r.get(TaskHistory.TASK)) && tenant.equals(r.get(TaskHistory.TENANT)))
+				.map(r -> r.get(TaskHistory.DURATION)).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.metadata;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * MetaDataBundle test
+ */
+public class MetaDataBundleTest {
+	@TempDir
+	File directory;
+
+	@Test
+	public void testCreateAndExtract() throws IOException {
+		File metadata = MetaDataFixture.copySample(new File(directory, "metadata"));
+		File bundle = new File(directory, "bundle.zip");
+		MetaDataManifest manifest = MetaDataManifest.scan(metadata, MetaDataManifest.empty());
+
+		assertTrue(MetaDataBundle.create(bundle, metadata, manifest));
+		long modified = bundle.lastModified();
+		assertFalse(MetaDataBundle.create(bundle, metadata, manifest));
+		assertEquals(modified, bundle.lastModified());
+
+		File extracted = new File(directory, "extracted");
+		List<String> changed = MetaDataBundle.extract(bundle, extracted, Collections.emptyList(), new File(directory, "state.properties"));
+
+		assertEquals(4, changed.size());
+		for (String path : manifest.getHashes().keySet()) {
+			assertTrue(Arrays.equals(Files.readAllBytes(new File(metadata, path).toPath()), Files.readAllBytes(new File(extracted, path).toPath())), path);
+		}
+	}
+
+	@Test
+	public void testExtractIncremental() throws IOException {
+		File metadata = MetaDataFixture.copySample(new File(directory, "metadata"));
+		File bundle = new File(directory, "bundle.zip");
+		File extracted = new File(directory, "extracted");
+		File state = new File(directory, "state.properties");
+		MetaDataBundle.create(bundle, metadata, MetaDataManifest.scan(metadata, MetaDataManifest.empty()));
+		MetaDataBundle.extract(bundle, extracted, Collections.emptyList(), state);
+
+		assertTrue(MetaDataBundle.extract(bundle, extracted, Collections.emptyList(), state).isEmpty());
+
+		String order = "mtp/entity/sample/Order.xml";
+		String template = "mtp/template/sample/order.xml";
+		Files.write(new File(metadata, order).toPath(), "<changed/>".getBytes(StandardCharsets.UTF_8));
+		new File(metadata, template).delete();
+		MetaDataBundle.create(bundle, metadata, MetaDataManifest.scan(metadata, MetaDataManifest.empty()));
+
+		assertEquals(Collections.singletonList(order), MetaDataBundle.extract(bundle, extracted, Collections.emptyList(), state));
+		assertEquals("<changed/>", new String(Files.readAllBytes(new File(extracted, order).toPath()), StandardCharsets.UTF_8));
+		assertFalse(new File(extracted, template).exists());
+	}
+
+	@Test
+	public void testExtractPaths() throws IOException {
+		File metadata = MetaDataFixture.copySample(new File(directory, "metadata"));
+		File bundle = new File(directory, "bundle.zip");
+		File extracted = new File(directory, "extracted");
+		MetaDataBundle.create(bundle, metadata, MetaDataManifest.scan(metadata, MetaDataManifest.empty()));
+
+		List<String> changed = MetaDataBundle.extract(bundle, extracted, Arrays.asList("/mtp/entity/", "mtp/action/"), new File(directory, "state.properties"));
+
+		Collections.sort(changed);
+		assertEquals(Arrays.asList("mtp/action/sample/ShowOrder.xml", "mtp/entity/sample/Order.xml"), changed);
+		assertFalse(new File(extracted, "mtp/template/sample/order.xml").exists());
+		assertFalse(new File(extracted, MetaDataFixture.SAMPLE_NON_METADATA).exists());
+	}
+
+	@Test
+	public void testIsSafePath() {
+		assertTrue(MetaDataBundle.isSafePath("mtp/entity/sample/Order.xml"));
+		assertTrue(MetaDataBundle.isSafePath("mtp/entity/a..b.xml"));
+		assertFalse(MetaDataBundle.isSafePath(""));
+		assertFalse(MetaDataBundle.isSafePath("/etc/passwd"));
+		assertFalse(MetaDataBundle.isSafePath("C:/Windows/win.ini"));
+		assertFalse(MetaDataBundle.isSafePath("../outside.xml"));
+		assertFalse(MetaDataBundle.isSafePath("mtp/../../outside.xml"));
+		assertFalse(MetaDataBundle.isSafePath("mtp\\..\\..\\outside.xml"));
+	}
+
+	@Test
+	public void testExtractRejectsUnsafePath() throws IOException {
+		File bundle = new File(directory, "bundle.zip");
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(bundle))) {
+			out.putNextEntry(new ZipEntry("META-INF/iplass-metadata-index.properties"));
+			out.write("../outside.xml=0\n".getBytes(StandardCharsets.ISO_8859_1));
+			out.closeEntry();
+			out.putNextEntry(new ZipEntry("../outside.xml"));
+			out.write("<outside/>".getBytes(StandardCharsets.UTF_8));
+			out.closeEntry();
+		}
+		File extracted = new File(directory, "extracted");
+
+		assertThrows(RuntimeException.class,
+				() -> MetaDataBundle.extract(bundle, extracted, Collections.emptyList(), new File(directory, "state.properties")));
+		assertFalse(new File(directory, "outside.xml").exists());
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.metadata;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * MetaDataCanonicalizer test
+ */
+public class MetaDataCanonicalizerTest {
+	@TempDir
+	File directory;
+
+	@Test
+	public void testCanonicalize() throws IOException {
+		MetaDataFixture.copySample(directory);
+		byte[] nonMetaData = read(MetaDataFixture.SAMPLE_NON_METADATA);
+
+		Map<String, List<String>> volatileNames = new HashMap<>();
+		volatileNames.put(MetaDataCanonicalizer.ALL_TYPES, Arrays.asList("updateDate"));
+		volatileNames.put("mtp/entity", Arrays.asList("updateDate", "version"));
+		MetaDataCanonicalizer canonicalizer = new MetaDataCanonicalizer(Arrays.asList("mtp"), volatileNames);
+
+		assertEquals(3, canonicalizer.canonicalize(directory, 2));
+		// the file outside the metadata types is not rewritten.
+		assertTrue(Arrays.equals(nonMetaData, read(MetaDataFixture.SAMPLE_NON_METADATA)));
+
+		String order = new String(read("mtp/entity/sample/Order.xml"), StandardCharsets.UTF_8);
+		assertTrue(order.startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<metaDataEntry xmlns:xsi="));
+		assertFalse(order.contains("<updateDate>"));
+		assertFalse(order.contains("<version>"));
+		assertTrue(order.contains("\n\t<metaData id=\"/entity/sample/Order\" name=\"sample.Order\" xsi:type=\"metaEntity\">\n"));
+		assertTrue(order.contains(
+				"<script><![CDATA[if (entity.amount < 0) { throw new ApplicationException(\"amount < 0 & invalid\"); }]]></script>"));
+
+		String action = new String(read("mtp/action/sample/ShowOrder.xml"), StandardCharsets.UTF_8);
+		assertFalse(action.contains("<updateDate>"));
+		assertTrue(action.contains("<version>1</version>"));
+
+		String template = new String(read("mtp/template/sample/order.xml"), StandardCharsets.UTF_8);
+		assertTrue(template.contains("<source><![CDATA[<h1>${entity.orderNo}</h1>]]></source>"));
+
+		// the canonical files are not rewritten.
+		assertEquals(0, canonicalizer.canonicalize(directory, 2));
+	}
+
+	@Test
+	public void testTypes() throws IOException {
+		MetaDataFixture.copySample(directory);
+		byte[] action = read("mtp/action/sample/ShowOrder.xml");
+
+		MetaDataCanonicalizer canonicalizer = new MetaDataCanonicalizer(Arrays.asList("mtp/entity", "mtp/template/"), Collections.emptyMap());
+		assertEquals(2, canonicalizer.canonicalize(directory, 1));
+		assertTrue(Arrays.equals(action, read("mtp/action/sample/ShowOrder.xml")));
+
+		// "*" matches the action and the non-metadata file.
+		assertEquals(2, new MetaDataCanonicalizer(Arrays.asList(MetaDataCanonicalizer.ALL_TYPES), Collections.emptyMap()).canonicalize(directory, 1));
+	}
+
+	@Test
+	public void testTypesRequired() {
+		assertThrows(IllegalArgumentException.class, () -> new MetaDataCanonicalizer(Collections.emptyList(), Collections.emptyMap()));
+	}
+
+	@Test
+	public void testInvalidXml() throws IOException {
+		File file = new File(directory, "mtp/entity/Broken.xml");
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), "<metaDataEntry><path>".getBytes(StandardCharsets.UTF_8));
+
+		RuntimeException e = assertThrows(RuntimeException.class,
+				() -> new MetaDataCanonicalizer(Arrays.asList("mtp"), Collections.emptyMap()).canonicalize(directory, 1));
+		assertTrue(e.getMessage().startsWith("1 files could not be canonicalized.\nmtp/entity/Broken.xml: "));
+	}
+
+	private byte[] read(String path) throws IOException {
+		return Files.readAllBytes(new File(directory, path).toPath());
+	}
+}
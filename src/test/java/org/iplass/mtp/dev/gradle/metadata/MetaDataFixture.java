@@ -0,0 +1,150 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.metadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Metadata fixture of the tests.
+ *
+ * <p>
+ * The sample (src/test/resources/metadata) is a trimmed metadata directory exported from the file store:
+ * an entity, an action and a template, each with a volatile version and update date, and a non-metadata logback.xml.
+ * {@link #generate(File, int)} creates a synthetic corpus of any size from the sample metadata.
+ * </p>
+ *
+ * <p>
+ * {@link #createStandIn(File, File, File)} stands in for the metadata database of a tenant without iPLAss and a database:
+ * a stub of the metadata export batch (src/test/resources/standin) is added to the test project,
+ * and exports the definitions of a corpus directory to the file metadata store.
+ * </p>
+ */
+public final class MetaDataFixture {
+	/** relative paths of the sample metadata */
+	public static final List<String> SAMPLE_METADATA = Arrays.asList(
+			"mtp/action/sample/ShowOrder.xml", "mtp/entity/sample/Order.xml", "mtp/template/sample/order.xml");
+	/** relative path of the non-metadata file of the sample */
+	public static final String SAMPLE_NON_METADATA = "logback.xml";
+	/** class name of the stub of the metadata export batch */
+	public static final String STAND_IN_BATCH = "org.iplass.mtp.tools.batch.metadata.MetaDataExportRdbToFile";
+
+	/**
+	 * private constructor.
+	 */
+	private MetaDataFixture() {
+	}
+
+	/**
+	 * Copy the sample metadata directory.
+	 * @param directory destination directory.
+	 * @return destination directory.
+	 * @throws IOException if the copy fails.
+	 */
+	public static File copySample(File directory) throws IOException {
+		Path sample = getSample();
+		try (Stream<Path> stream = Files.walk(sample)) {
+			for (Path source : stream.filter(Files::isRegularFile).collect(Collectors.toList())) {
+				Path target = directory.toPath().resolve(sample.relativize(source).toString());
+				Files.createDirectories(target.getParent());
+				Files.copy(source, target);
+			}
+		}
+		return directory;
+	}
+
+	/**
+	 * Generate a synthetic metadata corpus of mixed types.
+	 *
+	 * <p>
+	 * The n-th definition is a copy of a sample metadata (in rotation) renamed with n, e.g. "mtp/entity/sample/Order4.xml".
+	 * </p>
+	 *
+	 * @param directory destination directory.
+	 * @param count number of definitions.
+	 * @return generated files.
+	 * @throws IOException if the generation fails.
+	 */
+	public static List<File> generate(File directory, int count) throws IOException {
+		Path sample = getSample();
+		List<String> templates = new ArrayList<>();
+		for (String path : SAMPLE_METADATA) {
+			templates.add(new String(Files.readAllBytes(sample.resolve(path)), StandardCharsets.UTF_8));
+		}
+
+		List<File> files = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			int index = i % SAMPLE_METADATA.size();
+			String path = SAMPLE_METADATA.get(index);
+			String name = path.substring(path.lastIndexOf('/') + 1, path.length() - ".xml".length());
+
+			File file = new File(directory, path.substring(0, path.length() - ".xml".length()) + i + ".xml");
+			file.getParentFile().mkdirs();
+			Files.write(file.toPath(), templates.get(index).replace(name, name + i).getBytes(StandardCharsets.UTF_8));
+			files.add(file);
+		}
+		return files;
+	}
+
+	/**
+	 * Create the stand-in of the metadata database in a test project.
+	 *
+	 * <p>
+	 * The source of the stub batch is added to src/main/java of the project, so the batch is executed on the classpath of the project.
+	 * The returned service-config is a properties file of the corpus directory ("rdb") and the file metadata store ("file").
+	 * </p>
+	 *
+	 * @param projectDirectory test project directory.
+	 * @param corpus directory of the metadata definitions. e.g. generated by {@link #generate(File, int)}.
+	 * @param store root directory of the file metadata store.
+	 * @return service-config file of the stand-in.
+	 * @throws IOException if the creation fails.
+	 */
+	public static File createStandIn(File projectDirectory, File corpus, File store) throws IOException {
+		Path source = getResource("/standin/MetaDataExportRdbToFile.java");
+		Path target = projectDirectory.toPath().resolve("src/main/java/" + STAND_IN_BATCH.replace('.', '/') + ".java");
+		Files.createDirectories(target.getParent());
+		Files.copy(source, target);
+
+		File serviceConfig = new File(projectDirectory, "standin-service-config.properties");
+		Files.write(serviceConfig.toPath(), Arrays.asList(
+				"rdb=" + corpus.getAbsolutePath().replace('\\', '/'),
+				"file=" + store.getAbsolutePath().replace('\\', '/')), StandardCharsets.UTF_8);
+		return serviceConfig;
+	}
+
+	private static Path getSample() throws IOException {
+		return getResource("/metadata");
+	}
+
+	private static Path getResource(String name) throws IOException {
+		try {
+			return Paths.get(MetaDataFixture.class.getResource(name).toURI());
+		} catch (URISyntaxException e) {
+			throw new IOException(e);
+		}
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.metadata;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * MetaDataFixture test
+ */
+public class MetaDataFixtureTest {
+	@TempDir
+	File directory;
+
+	@Test
+	public void testCopySample() throws IOException {
+		MetaDataFixture.copySample(directory);
+
+		for (String path : MetaDataFixture.SAMPLE_METADATA) {
+			assertTrue(new File(directory, path).isFile(), path);
+		}
+		assertTrue(new File(directory, MetaDataFixture.SAMPLE_NON_METADATA).isFile());
+	}
+
+	@Test
+	public void testGenerate() throws IOException {
+		List<File> files = MetaDataFixture.generate(directory, 10);
+
+		assertEquals(10, files.size());
+		assertEquals(4, new File(directory, "mtp/action/sample").list().length);
+		assertEquals(3, new File(directory, "mtp/entity/sample").list().length);
+		String content = new String(Files.readAllBytes(new File(directory, "mtp/entity/sample/Order4.xml").toPath()), StandardCharsets.UTF_8);
+		assertTrue(content.contains("<path>/entity/sample/Order4</path>"), content);
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.metadata;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * MetaDataManifest test
+ */
+public class MetaDataManifestTest {
+	@TempDir
+	File directory;
+
+	@Test
+	public void testScan() throws IOException {
+		File metadata = MetaDataFixture.copySample(new File(directory, "metadata"));
+
+		MetaDataManifest manifest = MetaDataManifest.scan(metadata, MetaDataManifest.empty());
+
+		assertEquals(4, manifest.size());
+		Map<String, String> hashes = manifest.getHashes();
+		assertEquals(Arrays.asList("logback.xml", "mtp/action/sample/ShowOrder.xml", "mtp/entity/sample/Order.xml", "mtp/template/sample/order.xml"),
+				Arrays.asList(hashes.keySet().toArray()));
+		assertTrue(hashes.values().stream().allMatch(h -> h.matches("[0-9a-f]{64}")));
+	}
+
+	@Test
+	public void testScanReusesUnchangedHash() throws IOException {
+		File metadata = MetaDataFixture.copySample(new File(directory, "metadata"));
+		File manifestFile = new File(directory, "manifest.properties");
+		MetaDataManifest.scan(metadata, MetaDataManifest.empty()).save(manifestFile);
+
+		// the hash is reused if the size and the last modified time are unchanged.
+		File order = new File(metadata, "mtp/entity/sample/Order.xml");
+		long lastModified = order.lastModified();
+		byte[] content = Files.readAllBytes(order.toPath());
+		content[content.length - 2] = 'X';
+		Files.write(order.toPath(), content);
+		order.setLastModified(lastModified);
+		MetaDataManifest previous = MetaDataManifest.load(manifestFile);
+		assertEquals(previous.getHashes(), MetaDataManifest.scan(metadata, previous).getHashes());
+
+		order.setLastModified(lastModified + 2000);
+		assertNotEquals(previous.getHashes().get("mtp/entity/sample/Order.xml"),
+				MetaDataManifest.scan(metadata, previous).getHashes().get("mtp/entity/sample/Order.xml"));
+	}
+
+	@Test
+	public void testFingerprint() throws IOException {
+		File metadata = MetaDataFixture.copySample(new File(directory, "metadata"));
+		String fingerprint = MetaDataManifest.scan(metadata, MetaDataManifest.empty()).getFingerprint();
+		assertEquals(fingerprint, MetaDataManifest.scan(metadata, MetaDataManifest.empty()).getFingerprint());
+
+		assertTrue(new File(metadata, "logback.xml").delete());
+		assertNotEquals(fingerprint, MetaDataManifest.scan(metadata, MetaDataManifest.empty()).getFingerprint());
+	}
+
+	@Test
+	public void testSaveIsDeterministic() throws IOException {
+		MetaDataFixture.generate(new File(directory, "metadata"), 30);
+		MetaDataManifest manifest = MetaDataManifest.scan(new File(directory, "metadata"), MetaDataManifest.empty());
+		File first = new File(directory, "first.properties");
+		File second = new File(directory, "second.properties");
+
+		manifest.save(first);
+		manifest.save(second);
+
+		byte[] content = Files.readAllBytes(first.toPath());
+		assertArrayEquals(content, Files.readAllBytes(second.toPath()));
+		assertFalse(new String(content, StandardCharsets.ISO_8859_1).contains("#"));
+		assertEquals(manifest.getHashes(), MetaDataManifest.load(first).getHashes());
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.metadata;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.iplass.mtp.dev.gradle.PropertyFileUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * MetaDataVersionIndex test
+ */
+public class MetaDataVersionIndexTest {
+	@TempDir
+	File directory;
+
+	@Test
+	public void testGetVersions() throws IOException {
+		File metadata = MetaDataFixture.copySample(new File(directory, "metadata"));
+		MetaDataManifest manifest = MetaDataManifest.scan(metadata, MetaDataManifest.empty());
+
+		Map<String, String> expected = new TreeMap<>();
+		expected.put("/action/sample/ShowOrder", "1");
+		expected.put("/entity/sample/Order", "3");
+		expected.put("/template/sample/order", "2");
+		assertEquals(expected, MetaDataVersionIndex.index(metadata, manifest, MetaDataVersionIndex.load(new File(directory, "none"))).getVersions(manifest));
+	}
+
+	@Test
+	public void testIndexReusesPreviousEntry() throws IOException {
+		File metadata = MetaDataFixture.copySample(new File(directory, "metadata"));
+		File order = new File(metadata, "mtp/entity/sample/Order.xml");
+		MetaDataManifest manifest = MetaDataManifest.scan(metadata, MetaDataManifest.empty());
+		String hash = manifest.getHashes().get("mtp/entity/sample/Order.xml");
+
+		// the entry of the same content hash is not read again.
+		File indexFile = new File(directory, "index.properties");
+		PropertyFileUtil.saveSorted(indexFile, Collections.singletonMap(hash, "/entity/sample/Order\t9"));
+		MetaDataVersionIndex index = MetaDataVersionIndex.index(metadata, manifest, MetaDataVersionIndex.load(indexFile));
+		assertEquals("9", index.getVersions(manifest).get("/entity/sample/Order"));
+
+		// the changed file is read.
+		index.save(indexFile);
+		String content = new String(Files.readAllBytes(order.toPath()), StandardCharsets.UTF_8);
+		Files.write(order.toPath(), content.replace("<version>3</version>", "<version>4</version>").getBytes(StandardCharsets.UTF_8));
+		manifest = MetaDataManifest.scan(metadata, manifest);
+		assertEquals("4", MetaDataVersionIndex.index(metadata, manifest, MetaDataVersionIndex.load(indexFile)).getVersions(manifest).get("/entity/sample/Order"));
+	}
+
+	@Test
+	public void testDuplicatePath() throws IOException {
+		File metadata = MetaDataFixture.copySample(new File(directory, "metadata"));
+		File order = new File(metadata, "mtp/entity/sample/Order.xml");
+		Files.copy(order.toPath(), new File(order.getParentFile(), "OrderCopy.xml").toPath());
+		MetaDataManifest manifest = MetaDataManifest.scan(metadata, MetaDataManifest.empty());
+
+		MetaDataVersionIndex index = MetaDataVersionIndex.index(metadata, manifest, MetaDataVersionIndex.load(new File(directory, "none")));
+		assertThrows(RuntimeException.class, () -> index.getVersions(manifest));
+	}
+}
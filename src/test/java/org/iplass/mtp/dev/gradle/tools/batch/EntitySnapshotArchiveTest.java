@@ -0,0 +1,131 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.tools.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.gradle.api.GradleException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * EntitySnapshotArchive test
+ */
+public class EntitySnapshotArchiveTest {
+	@TempDir
+	File directory;
+
+	@Test
+	public void testCreateAndExtract() throws IOException {
+		File archive = createArchive();
+		assertTrue(archive.exists());
+		assertFalse(new File(archive.getParentFile(), archive.getName() + ".tmp").exists());
+		assertEquals(Arrays.asList("mtp.auth.User", "mtp.auth.Group"), EntitySnapshotArchive.getEntities(archive));
+		assertEquals("1", EntitySnapshotArchive.getIndex(archive).getProperty("tenantId"));
+
+		File destination = new File(directory, "restore");
+		List<String> extracted = EntitySnapshotArchive.extract(archive, destination, Collections.emptyList());
+		assertEquals(Arrays.asList("mtp.auth.User", "mtp.auth.Group"), extracted);
+		assertEquals("oid,name\n1,user\n", read(new File(destination, "mtp.auth.User.csv")));
+		assertEquals("oid,name\n1,group\n", read(new File(destination, "mtp.auth.Group.csv")));
+	}
+
+	@Test
+	public void testExtractPartial() throws IOException {
+		File archive = createArchive();
+
+		File destination = new File(directory, "restore");
+		List<String> extracted = EntitySnapshotArchive.extract(archive, destination, Arrays.asList("mtp.auth.Group", "mtp.auth.Role"));
+		assertEquals(Arrays.asList("mtp.auth.Group"), extracted);
+		assertTrue(new File(destination, "mtp.auth.Group.csv").exists());
+		assertFalse(new File(destination, "mtp.auth.User.csv").exists());
+	}
+
+	@Test
+	public void testExtractRejectsInvalidEntry() throws IOException {
+		File missing = zip("missing.zip", "entity.0=mtp.auth.User\nfile.0=data/mtp.auth.User.csv\n", null, null);
+		assertThrows(GradleException.class, () -> EntitySnapshotArchive.extract(missing, new File(directory, "restore"), Collections.emptyList()));
+
+		File unsafe = zip("unsafe.zip", "entity.0=mtp.auth.User\nfile.0=data/../outside.csv\n", "data/../outside.csv", "oid\n");
+		assertThrows(GradleException.class, () -> EntitySnapshotArchive.extract(unsafe, new File(directory, "restore"), Collections.emptyList()));
+		assertFalse(new File(directory, "outside.csv").exists());
+	}
+
+	@Test
+	public void testKey() {
+		String key = EntitySnapshotArchive.key("abc", "1", Arrays.asList("mtp.auth.User", "mtp.auth.Group"));
+		assertEquals(32, key.length());
+		assertEquals(key, EntitySnapshotArchive.key("abc", "1", Arrays.asList("mtp.auth.Group", "mtp.auth.User")));
+
+		assertNotEquals(key, EntitySnapshotArchive.key("abd", "1", Arrays.asList("mtp.auth.User", "mtp.auth.Group")));
+		assertNotEquals(key, EntitySnapshotArchive.key("abc", "2", Arrays.asList("mtp.auth.User", "mtp.auth.Group")));
+		assertNotEquals(key, EntitySnapshotArchive.key("abc", "1", Arrays.asList("mtp.auth.User")));
+		assertNotEquals(key, EntitySnapshotArchive.key("abc", "1", Collections.emptyList()));
+	}
+
+	private File createArchive() throws IOException {
+		File data = new File(directory, "data");
+		data.mkdirs();
+		Map<String, File> files = new LinkedHashMap<>();
+		files.put("mtp.auth.User", write(new File(data, "mtp.auth.User.csv"), "oid,name\n1,user\n"));
+		files.put("mtp.auth.Group", write(new File(data, "mtp.auth.Group.csv"), "oid,name\n1,group\n"));
+
+		File archive = new File(directory, "snapshot/key.zip");
+		EntitySnapshotArchive.create(archive, files, Collections.singletonMap("tenantId", "1"));
+		return archive;
+	}
+
+	private File zip(String name, String index, String entryName, String content) throws IOException {
+		File archive = new File(directory, name);
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive))) {
+			out.putNextEntry(new ZipEntry("index.properties"));
+			out.write(index.getBytes(StandardCharsets.ISO_8859_1));
+			out.closeEntry();
+			if (null != entryName) {
+				out.putNextEntry(new ZipEntry(entryName));
+				out.write(content.getBytes(StandardCharsets.UTF_8));
+				out.closeEntry();
+			}
+		}
+		return archive;
+	}
+
+	private static File write(File file, String content) throws IOException {
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+}
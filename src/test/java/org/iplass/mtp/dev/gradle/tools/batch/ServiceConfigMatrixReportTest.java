@@ -0,0 +1,123 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.tools.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * ServiceConfigMatrixReport test
+ */
+public class ServiceConfigMatrixReportTest {
+	/** viewer output of a service-config */
+	private static final String OUTPUT = "INFO  loading service-config\n"
+			+ "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<serviceDefinition>\n"
+			+ "  <service>\n"
+			+ "    <interface>org.iplass.mtp.impl.cache.CacheService</interface>\n"
+			+ "    <property name=\"defaultStore\" value=\"%s\"/>\n"
+			+ "  </service>\n"
+			+ "  <service>\n"
+			+ "    <interface>org.iplass.mtp.impl.rdb.RdbService</interface>\n"
+			+ "    <property name=\"maxConnections\">10</property>\n"
+			+ "    <property>a</property>\n"
+			+ "    <property>b</property>\n"
+			+ "  </service>\n"
+			+ "</serviceDefinition>\n"
+			+ "INFO  done\n";
+
+	@TempDir
+	File directory;
+
+	@Test
+	public void testFlattenXml() {
+		Map<String, String> expected = new LinkedHashMap<>();
+		String cache = "/serviceDefinition/service[org.iplass.mtp.impl.cache.CacheService]";
+		String rdb = "/serviceDefinition/service[org.iplass.mtp.impl.rdb.RdbService]";
+		expected.put(cache + "/interface[1]", "org.iplass.mtp.impl.cache.CacheService");
+		expected.put(cache + "/property[defaultStore]@name", "defaultStore");
+		expected.put(cache + "/property[defaultStore]@value", "memory");
+		expected.put(rdb + "/interface[1]", "org.iplass.mtp.impl.rdb.RdbService");
+		expected.put(rdb + "/property[maxConnections]@name", "maxConnections");
+		expected.put(rdb + "/property[maxConnections]", "10");
+		expected.put(rdb + "/property[2]", "a");
+		expected.put(rdb + "/property[3]", "b");
+
+		assertEquals(expected, ServiceConfigMatrixReport.flatten(String.format(OUTPUT, "memory")));
+	}
+
+	@Test
+	public void testFlattenDuplicateKey() {
+		Map<String, String> values = ServiceConfigMatrixReport.flatten("<a><b name=\"x\">1</b><b name=\"x\">2</b></a>");
+
+		Map<String, String> expected = new LinkedHashMap<>();
+		expected.put("/a/b[x]@name", "x");
+		expected.put("/a/b[x]", "1");
+		expected.put("/a/b[x]@name#2", "x");
+		expected.put("/a/b[x]#2", "2");
+		assertEquals(expected, values);
+	}
+
+	@Test
+	public void testFlattenLines() {
+		Map<String, String> expected = new LinkedHashMap<>();
+		expected.put("cache = memory", "present");
+		expected.put("value < 1", "present");
+
+		assertEquals(expected, ServiceConfigMatrixReport.flatten("cache = memory\r\n\n  value < 1  \n"));
+		// broken XML is compared as lines.
+		assertEquals(Arrays.asList("<a><b>", "</a>"), Arrays.asList(ServiceConfigMatrixReport.flatten("<a><b>\n</a>").keySet().toArray()));
+	}
+
+	@Test
+	public void testReport() throws IOException {
+		write("config_0.out", String.format(OUTPUT, "memory"));
+		write("config_0.properties", "status=0\n");
+		write("config_1.out", String.format(OUTPUT, "redis"));
+		write("config_1.properties", "status=0\n");
+		write("config_2.out", "merge failed\n");
+		write("config_2.properties", "status=1\n");
+
+		ServiceConfigMatrixReport report = new ServiceConfigMatrixReport(Arrays.asList("a.xml", "b.xml", "c.xml", "d.xml"), directory);
+		assertEquals(2, report.getErrorCount());
+		assertEquals(1, report.getDifferenceCount());
+
+		File file = new File(directory, "report/report.txt");
+		report.write(file);
+		String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).replace("\r\n", "\n");
+		assertTrue(content.contains("[3] c.xml : ERROR exit status 1"));
+		assertTrue(content.contains("[4] d.xml : ERROR No result."));
+		assertTrue(content.contains("== differences (1) ==\n"
+				+ "/serviceDefinition/service[org.iplass.mtp.impl.cache.CacheService]/property[defaultStore]@value\n"
+				+ "  [1] memory\n"
+				+ "  [2] redis\n"));
+	}
+
+	private void write(String name, String content) throws IOException {
+		Files.write(new File(directory, name).toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.tools.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.GradleRunner;
+import org.iplass.mtp.dev.gradle.metadata.MetaDataFixture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * ToolsBatchMetaConfigTask functional test
+ *
+ * <p>
+ * metaConvertRdbToFile and metaSyncRdbToFile are executed end to end against the stand-in of the metadata database.
+ * The size of the corpus is the system property "metadata.fixture.count" (e.g. gradle test -PmetadataFixtureCount=100000),
+ * and the throughput and the peak heap of the batch are printed.
+ * </p>
+ */
+public class ToolsBatchMetaConfigTaskFunctionalTest {
+	/** number of definitions of the corpus */
+	private static final int COUNT = Integer.getInteger("metadata.fixture.count", 1000);
+	/** output of the stand-in batch */
+	private static final Pattern STAND_IN_OUTPUT = Pattern.compile("stand-in exported=(\\d+) .*");
+
+	@TempDir
+	File projectDirectory;
+
+	@Test
+	public void testExport() throws IOException {
+		File corpus = new File(projectDirectory, "rdb");
+		File store = new File(projectDirectory, "src/main/resources/metadata");
+		MetaDataFixture.generate(corpus, COUNT);
+		File serviceConfig = MetaDataFixture.createStandIn(projectDirectory, corpus, store);
+		write("settings.gradle", "rootProject.name = 'sample'\n");
+		write("build.gradle", "plugins {\n"
+				+ "	id 'org.iplass.dev'\n"
+				+ "}\n"
+				+ "iplass {\n"
+				+ "	tenantId = 1\n"
+				+ "	serviceConfig = '" + serviceConfig.getAbsolutePath().replace('\\', '/') + "'\n"
+				+ "}\n"
+				+ "metaSyncRdbToFile {\n"
+				+ "	source = ['/entity/*']\n"
+				+ "}\n");
+
+		// all definitions are converted.
+		BuildResult result = run("metaConvertRdbToFile");
+		assertEquals(COUNT, getExported(result));
+		assertEquals(COUNT, countFiles(store));
+
+		// only the entities are synchronized. the n-th definition is an entity if n % 3 == 1.
+		Files.delete(new File(store, "mtp/entity/sample/Order1.xml").toPath());
+		result = run("metaSyncRdbToFile");
+		assertEquals((COUNT + 1) / 3, getExported(result));
+		assertEquals(COUNT, countFiles(store));
+	}
+
+	private BuildResult run(String... arguments) {
+		return GradleRunner.create()
+				.withProjectDir(projectDirectory)
+				.withPluginClasspath()
+				.withArguments(arguments)
+				.build();
+	}
+
+	private static int getExported(BuildResult result) {
+		for (String line : result.getOutput().split("\\R")) {
+			Matcher matcher = STAND_IN_OUTPUT.matcher(line);
+			if (matcher.matches()) {
+				System.out.println(COUNT + " definitions, " + line);
+				return Integer.parseInt(matcher.group(1));
+			}
+		}
+		throw new AssertionError("No output of the stand-in batch. " + result.getOutput());
+	}
+
+	private static long countFiles(File directory) throws IOException {
+		try (Stream<Path> stream = Files.walk(directory.toPath())) {
+			return stream.filter(Files::isRegularFile).count();
+		}
+	}
+
+	private void write(String path, String content) throws IOException {
+		Files.write(new File(projectDirectory, path).toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+}
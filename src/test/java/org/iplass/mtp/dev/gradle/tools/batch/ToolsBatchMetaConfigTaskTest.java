@@ -0,0 +1,54 @@
+/*
+ * Copyright 2024 DENTSU SOKEN INC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iplass.mtp.dev.gradle.tools.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.iplass.mtp.dev.gradle.metadata.MetaDataFixture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * ToolsBatchMetaConfigTask test
+ */
+public class ToolsBatchMetaConfigTaskTest {
+	@TempDir
+	File directory;
+
+	@Test
+	public void testMoveStaged() throws Exception {
+		File output = MetaDataFixture.copySample(new File(directory, "output"));
+		File staging = new File(directory, "staging");
+		MetaDataFixture.generate(staging, 4);
+		Files.write(new File(staging, MetaDataFixture.SAMPLE_METADATA.get(1)).toPath(), "exported".getBytes(StandardCharsets.UTF_8));
+
+		assertEquals(5, ToolsBatchMetaConfigTask.moveStaged(staging, output));
+		assertEquals("exported", new String(Files.readAllBytes(new File(output, MetaDataFixture.SAMPLE_METADATA.get(1)).toPath()), StandardCharsets.UTF_8));
+		assertTrue(new File(output, "mtp/entity/sample/Order1.xml").exists());
+		assertTrue(new File(output, MetaDataFixture.SAMPLE_NON_METADATA).exists());
+		assertFalse(new File(staging, "mtp/entity/sample/Order1.xml").exists());
+
+		// nothing to move after an interrupted execution has moved all files.
+		assertEquals(0, ToolsBatchMetaConfigTask.moveStaged(staging, output));
+		assertEquals(0, ToolsBatchMetaConfigTask.moveStaged(new File(directory, "none"), output));
+	}
+}
@@ -0,0 +1,89 @@
+package org.iplass.mtp.tools.batch.metadata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Stand-in of the metadata export batch of iPLAss for the plugin tests.
+ *
+ * <p>
+ * The service-config (mtp.config) is a properties file: "rdb" is the directory of the metadata definitions that stands in for the database,
+ * and "file" is the root directory of the file metadata store. The definition of path "/entity/sample/Order" is "mtp/entity/sample/Order.xml" in both directories.
+ * The meta.config keys (initialConvert, meta.source) are the same as the batch of iPLAss.
+ * </p>
+ */
+public class MetaDataExportRdbToFile {
+	public static void main(String[] args) throws IOException {
+		Properties service = load(System.getProperty("mtp.config"));
+		Properties meta = load(System.getProperty("meta.config"));
+		Path rdb = Paths.get(service.getProperty("rdb"));
+		Path file = Paths.get(service.getProperty("file"));
+		long start = System.nanoTime();
+
+		// the initial conversion replaces the file metadata store.
+		boolean initialConvert = Boolean.parseBoolean(meta.getProperty("initialConvert"));
+		if (initialConvert && Files.exists(file)) {
+			try (Stream<Path> stream = Files.walk(file)) {
+				for (Path path : stream.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+					Files.delete(path);
+				}
+			}
+		}
+
+		List<Pattern> patterns = new ArrayList<>();
+		for (String source : meta.getProperty("meta.source", "").split(",")) {
+			if (!initialConvert && !source.trim().isEmpty()) {
+				patterns.add(Pattern.compile(Pattern.quote(source.trim()).replace("*", "\\E.*\\Q")));
+			}
+		}
+
+		int exported = 0;
+		Path root = rdb.resolve("mtp");
+		try (Stream<Path> stream = Files.walk(root)) {
+			for (Path definition : stream.filter(p -> p.toString().endsWith(".xml")).sorted().collect(Collectors.toList())) {
+				String relative = root.relativize(definition).toString().replace('\\', '/');
+				String path = "/" + relative.substring(0, relative.length() - ".xml".length());
+				if (!patterns.isEmpty() && patterns.stream().noneMatch(p -> p.matcher(path).matches())) {
+					continue;
+				}
+
+				Path target = file.resolve("mtp").resolve(relative);
+				Files.createDirectories(target.getParent());
+				Files.copy(definition, target, StandardCopyOption.REPLACE_EXISTING);
+				exported++;
+			}
+		}
+
+		long elapsed = Math.max(1, (System.nanoTime() - start) / 1000000);
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (MemoryType.HEAP == pool.getType()) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		System.out.println("stand-in exported=" + exported + " elapsed=" + elapsed + "ms throughput=" + (exported * 1000L / elapsed)
+				+ "/s peakHeap=" + peak);
+	}
+
+	private static Properties load(String path) throws IOException {
+		Properties properties = new Properties();
+		try (InputStream input = Files.newInputStream(Paths.get(path))) {
+			properties.load(input);
+		}
+		return properties;
+	}
+}